@@ -5,7 +5,7 @@
   Java class name: CharMap4
   Copyright (c) 2008 by Keith Fenske.  Apache License or GNU GPL.
 
-  This is a Java 5.0 graphical (GUI) application to display Unicode characters
+  This is a Java 8 graphical (GUI) application to display Unicode characters
   or glyphs in text fonts, and copy those characters to the system clipboard.
   Its major purpose is as a visual accessory for word processors such as
   Microsoft Word.  The "character map" utility that comes with Windows suffers
@@ -98,15 +98,25 @@
       the right or below because this program uses a single pass for the grid:
       draw one square and its glyph, then the next square.  Two passes may be
       required: first draw all squares, then draw all glyphs.  KF, 2011-07-31.
+      [Done, 2026-10-16, request user-012: the grid is drawn in two passes,
+      and characters too big for a cached tile are drawn directly.]
 */
 
 import java.awt.*;                // older Java GUI support
 import java.awt.event.*;          // older Java GUI event support
 import java.awt.font.*;           // low-level glyphs instead of characters
+import java.awt.geom.*;           // scaling for high-resolution displays
+import java.awt.image.*;          // cached images of characters and glyphs
 import java.io.*;                 // standard I/O
+import java.nio.*;                // byte buffers for mapped files
+import java.nio.channels.*;       // memory-mapped data file
+import java.nio.charset.*;        // UTF-8 encoding for packed captions
 import java.text.*;               // number formatting
 import java.util.*;               // calendars, dates, lists, maps, vectors
+import java.util.concurrent.*;    // fork-join pool for scanning fonts
+import java.util.concurrent.atomic.*; // shared arrays updated by many threads
 import java.util.regex.*;         // regular expressions
+import java.util.zip.*;           // compressed font cache files
 import javax.swing.*;             // newer Java GUI support
 import javax.swing.event.*;       // change listener
 
@@ -126,6 +136,7 @@ public class CharMap4
   static final String ACTION_SAMPLE_CLEAR = "SampleClear";
   static final String COPYRIGHT_NOTICE =
     "Copyright (c) 2008 by Keith Fenske.  Apache License or GNU GPL.";
+  static final String DEFAULT_CACHE = ".charmap4"; // font cache folder in home
   static final String DEFAULT_FILE = "CharMap4.txt"; // data file with names
   static final String DEFAULT_FONT = "Verdana"; // default font name
   static final int DEFAULT_HEIGHT = 500; // default window height in pixels
@@ -144,8 +155,209 @@ public class CharMap4
   static final String PROGRAM_TITLE =
     "Display Characters and Copy to System Clipboard - by: Keith Fenske";
   static final char REPLACE_CHAR = '\uFFFD'; // Unicode replacement character
+  static final String SUMMARY_TITLE = "Characters in Sample Text";
+                                  // report dialog title for summary
   static final String SYSTEM_FONT = "Dialog"; // this font is always available
 
+  /* Unicode characters are grouped into named "blocks" or ranges, as listed in
+  the file:
+
+      http://www.unicode.org/Public/UNIDATA/Blocks.txt
+
+  Block names differ slightly from the "First" and "Last" names found in the
+  UNIDATA/UnicodeData.txt file.  Whatever you may think of the block names,
+  they are the official punctuation and spelling.  The first and last
+  character numbers for each block are in increasing order, without overlaps,
+  so that blockName() can do a binary search.
+
+  The following tables are mechanically generated from UNIDATA/Blocks.txt by
+  the unpublished CharMapParse1 Java application.  Do not edit these tables
+  manually.
+
+  Last updated from the 2021-01-22 UNIDATA/Blocks.txt file (14.0.0). */
+
+  static final int[] BLOCK_FIRST = {
+    0x0000, 0x0080, 0x0100, 0x0180, 0x0250, 0x02B0, 0x0300, 0x0370, 0x0400,
+    0x0500, 0x0530, 0x0590, 0x0600, 0x0700, 0x0750, 0x0780, 0x07C0, 0x0800,
+    0x0840, 0x0860, 0x0870, 0x08A0, 0x0900, 0x0980, 0x0A00, 0x0A80, 0x0B00,
+    0x0B80, 0x0C00, 0x0C80, 0x0D00, 0x0D80, 0x0E00, 0x0E80, 0x0F00, 0x1000,
+    0x10A0, 0x1100, 0x1200, 0x1380, 0x13A0, 0x1400, 0x1680, 0x16A0, 0x1700,
+    0x1720, 0x1740, 0x1760, 0x1780, 0x1800, 0x18B0, 0x1900, 0x1950, 0x1980,
+    0x19E0, 0x1A00, 0x1A20, 0x1AB0, 0x1B00, 0x1B80, 0x1BC0, 0x1C00, 0x1C50,
+    0x1C80, 0x1C90, 0x1CC0, 0x1CD0, 0x1D00, 0x1D80, 0x1DC0, 0x1E00, 0x1F00,
+    0x2000, 0x2070, 0x20A0, 0x20D0, 0x2100, 0x2150, 0x2190, 0x2200, 0x2300,
+    0x2400, 0x2440, 0x2460, 0x2500, 0x2580, 0x25A0, 0x2600, 0x2700, 0x27C0,
+    0x27F0, 0x2800, 0x2900, 0x2980, 0x2A00, 0x2B00, 0x2C00, 0x2C60, 0x2C80,
+    0x2D00, 0x2D30, 0x2D80, 0x2DE0, 0x2E00, 0x2E80, 0x2F00, 0x2FF0, 0x3000,
+    0x3040, 0x30A0, 0x3100, 0x3130, 0x3190, 0x31A0, 0x31C0, 0x31F0, 0x3200,
+    0x3300, 0x3400, 0x4DC0, 0x4E00, 0xA000, 0xA490, 0xA4D0, 0xA500, 0xA640,
+    0xA6A0, 0xA700, 0xA720, 0xA800, 0xA830, 0xA840, 0xA880, 0xA8E0, 0xA900,
+    0xA930, 0xA960, 0xA980, 0xA9E0, 0xAA00, 0xAA60, 0xAA80, 0xAAE0, 0xAB00,
+    0xAB30, 0xAB70, 0xABC0, 0xAC00, 0xD7B0, 0xD800, 0xDB80, 0xDC00, 0xE000,
+    0xF900, 0xFB00, 0xFB50, 0xFE00, 0xFE10, 0xFE20, 0xFE30, 0xFE50, 0xFE70,
+    0xFF00, 0xFFF0, 0x10000, 0x10080, 0x10100, 0x10140, 0x10190, 0x101D0,
+    0x10280, 0x102A0, 0x102E0, 0x10300, 0x10330, 0x10350, 0x10380, 0x103A0,
+    0x10400, 0x10450, 0x10480, 0x104B0, 0x10500, 0x10530, 0x10570, 0x10600,
+    0x10780, 0x10800, 0x10840, 0x10860, 0x10880, 0x108E0, 0x10900, 0x10920,
+    0x10980, 0x109A0, 0x10A00, 0x10A60, 0x10A80, 0x10AC0, 0x10B00, 0x10B40,
+    0x10B60, 0x10B80, 0x10C00, 0x10C80, 0x10D00, 0x10E60, 0x10E80, 0x10F00,
+    0x10F30, 0x10F70, 0x10FB0, 0x10FE0, 0x11000, 0x11080, 0x110D0, 0x11100,
+    0x11150, 0x11180, 0x111E0, 0x11200, 0x11280, 0x112B0, 0x11300, 0x11400,
+    0x11480, 0x11580, 0x11600, 0x11660, 0x11680, 0x11700, 0x11800, 0x118A0,
+    0x11900, 0x119A0, 0x11A00, 0x11A50, 0x11AB0, 0x11AC0, 0x11C00, 0x11C70,
+    0x11D00, 0x11D60, 0x11EE0, 0x11FB0, 0x11FC0, 0x12000, 0x12400, 0x12480,
+    0x12F90, 0x13000, 0x13430, 0x14400, 0x16800, 0x16A40, 0x16A70, 0x16AD0,
+    0x16B00, 0x16E40, 0x16F00, 0x16FE0, 0x17000, 0x18800, 0x18B00, 0x18D00,
+    0x1AFF0, 0x1B000, 0x1B100, 0x1B130, 0x1B170, 0x1BC00, 0x1BCA0, 0x1CF00,
+    0x1D000, 0x1D100, 0x1D200, 0x1D2E0, 0x1D300, 0x1D360, 0x1D400, 0x1D800,
+    0x1DF00, 0x1E000, 0x1E100, 0x1E290, 0x1E2C0, 0x1E7E0, 0x1E800, 0x1E900,
+    0x1EC70, 0x1ED00, 0x1EE00, 0x1F000, 0x1F030, 0x1F0A0, 0x1F100, 0x1F200,
+    0x1F300, 0x1F600, 0x1F650, 0x1F680, 0x1F700, 0x1F780, 0x1F800, 0x1F900,
+    0x1FA00, 0x1FA70, 0x1FB00, 0x20000, 0x2A700, 0x2B740, 0x2B820, 0x2CEB0,
+    0x2F800, 0x30000, 0xE0000, 0xE0100, 0xF0000, 0x100000};
+  static final int[] BLOCK_LAST = {
+    0x007F, 0x00FF, 0x017F, 0x024F, 0x02AF, 0x02FF, 0x036F, 0x03FF, 0x04FF,
+    0x052F, 0x058F, 0x05FF, 0x06FF, 0x074F, 0x077F, 0x07BF, 0x07FF, 0x083F,
+    0x085F, 0x086F, 0x089F, 0x08FF, 0x097F, 0x09FF, 0x0A7F, 0x0AFF, 0x0B7F,
+    0x0BFF, 0x0C7F, 0x0CFF, 0x0D7F, 0x0DFF, 0x0E7F, 0x0EFF, 0x0FFF, 0x109F,
+    0x10FF, 0x11FF, 0x137F, 0x139F, 0x13FF, 0x167F, 0x169F, 0x16FF, 0x171F,
+    0x173F, 0x175F, 0x177F, 0x17FF, 0x18AF, 0x18FF, 0x194F, 0x197F, 0x19DF,
+    0x19FF, 0x1A1F, 0x1AAF, 0x1AFF, 0x1B7F, 0x1BBF, 0x1BFF, 0x1C4F, 0x1C7F,
+    0x1C8F, 0x1CBF, 0x1CCF, 0x1CFF, 0x1D7F, 0x1DBF, 0x1DFF, 0x1EFF, 0x1FFF,
+    0x206F, 0x209F, 0x20CF, 0x20FF, 0x214F, 0x218F, 0x21FF, 0x22FF, 0x23FF,
+    0x243F, 0x245F, 0x24FF, 0x257F, 0x259F, 0x25FF, 0x26FF, 0x27BF, 0x27EF,
+    0x27FF, 0x28FF, 0x297F, 0x29FF, 0x2AFF, 0x2BFF, 0x2C5F, 0x2C7F, 0x2CFF,
+    0x2D2F, 0x2D7F, 0x2DDF, 0x2DFF, 0x2E7F, 0x2EFF, 0x2FDF, 0x2FFF, 0x303F,
+    0x309F, 0x30FF, 0x312F, 0x318F, 0x319F, 0x31BF, 0x31EF, 0x31FF, 0x32FF,
+    0x33FF, 0x4DBF, 0x4DFF, 0x9FFF, 0xA48F, 0xA4CF, 0xA4FF, 0xA63F, 0xA69F,
+    0xA6FF, 0xA71F, 0xA7FF, 0xA82F, 0xA83F, 0xA87F, 0xA8DF, 0xA8FF, 0xA92F,
+    0xA95F, 0xA97F, 0xA9DF, 0xA9FF, 0xAA5F, 0xAA7F, 0xAADF, 0xAAFF, 0xAB2F,
+    0xAB6F, 0xABBF, 0xABFF, 0xD7AF, 0xD7FF, 0xDB7F, 0xDBFF, 0xDFFF, 0xF8FF,
+    0xFAFF, 0xFB4F, 0xFDFF, 0xFE0F, 0xFE1F, 0xFE2F, 0xFE4F, 0xFE6F, 0xFEFF,
+    0xFFEF, 0xFFFF, 0x1007F, 0x100FF, 0x1013F, 0x1018F, 0x101CF, 0x101FF,
+    0x1029F, 0x102DF, 0x102FF, 0x1032F, 0x1034F, 0x1037F, 0x1039F, 0x103DF,
+    0x1044F, 0x1047F, 0x104AF, 0x104FF, 0x1052F, 0x1056F, 0x105BF, 0x1077F,
+    0x107BF, 0x1083F, 0x1085F, 0x1087F, 0x108AF, 0x108FF, 0x1091F, 0x1093F,
+    0x1099F, 0x109FF, 0x10A5F, 0x10A7F, 0x10A9F, 0x10AFF, 0x10B3F, 0x10B5F,
+    0x10B7F, 0x10BAF, 0x10C4F, 0x10CFF, 0x10D3F, 0x10E7F, 0x10EBF, 0x10F2F,
+    0x10F6F, 0x10FAF, 0x10FDF, 0x10FFF, 0x1107F, 0x110CF, 0x110FF, 0x1114F,
+    0x1117F, 0x111DF, 0x111FF, 0x1124F, 0x112AF, 0x112FF, 0x1137F, 0x1147F,
+    0x114DF, 0x115FF, 0x1165F, 0x1167F, 0x116CF, 0x1174F, 0x1184F, 0x118FF,
+    0x1195F, 0x119FF, 0x11A4F, 0x11AAF, 0x11ABF, 0x11AFF, 0x11C6F, 0x11CBF,
+    0x11D5F, 0x11DAF, 0x11EFF, 0x11FBF, 0x11FFF, 0x123FF, 0x1247F, 0x1254F,
+    0x12FFF, 0x1342F, 0x1343F, 0x1467F, 0x16A3F, 0x16A6F, 0x16ACF, 0x16AFF,
+    0x16B8F, 0x16E9F, 0x16F9F, 0x16FFF, 0x187FF, 0x18AFF, 0x18CFF, 0x18D7F,
+    0x1AFFF, 0x1B0FF, 0x1B12F, 0x1B16F, 0x1B2FF, 0x1BC9F, 0x1BCAF, 0x1CFCF,
+    0x1D0FF, 0x1D1FF, 0x1D24F, 0x1D2FF, 0x1D35F, 0x1D37F, 0x1D7FF, 0x1DAAF,
+    0x1DFFF, 0x1E02F, 0x1E14F, 0x1E2BF, 0x1E2FF, 0x1E7FF, 0x1E8DF, 0x1E95F,
+    0x1ECBF, 0x1ED4F, 0x1EEFF, 0x1F02F, 0x1F09F, 0x1F0FF, 0x1F1FF, 0x1F2FF,
+    0x1F5FF, 0x1F64F, 0x1F67F, 0x1F6FF, 0x1F77F, 0x1F7FF, 0x1F8FF, 0x1F9FF,
+    0x1FA6F, 0x1FAFF, 0x1FBFF, 0x2A6DF, 0x2B73F, 0x2B81F, 0x2CEAF, 0x2EBEF,
+    0x2FA1F, 0x3134F, 0xE007F, 0xE01EF, 0xFFFFF, 0x10FFFF};
+  static final String[] BLOCK_NAMES = {
+    "Basic Latin", "Latin-1 Supplement", "Latin Extended-A",
+    "Latin Extended-B", "IPA Extensions", "Spacing Modifier Letters",
+    "Combining Diacritical Marks", "Greek and Coptic", "Cyrillic",
+    "Cyrillic Supplement", "Armenian", "Hebrew", "Arabic", "Syriac",
+    "Arabic Supplement", "Thaana", "NKo", "Samaritan", "Mandaic",
+    "Syriac Supplement", "Arabic Extended-B", "Arabic Extended-A",
+    "Devanagari", "Bengali", "Gurmukhi", "Gujarati", "Oriya", "Tamil",
+    "Telugu", "Kannada", "Malayalam", "Sinhala", "Thai", "Lao", "Tibetan",
+    "Myanmar", "Georgian", "Hangul Jamo", "Ethiopic", "Ethiopic Supplement",
+    "Cherokee", "Unified Canadian Aboriginal Syllabics", "Ogham", "Runic",
+    "Tagalog", "Hanunoo", "Buhid", "Tagbanwa", "Khmer", "Mongolian",
+    "Unified Canadian Aboriginal Syllabics Extended", "Limbu", "Tai Le",
+    "New Tai Lue", "Khmer Symbols", "Buginese", "Tai Tham",
+    "Combining Diacritical Marks Extended", "Balinese", "Sundanese", "Batak",
+    "Lepcha", "Ol Chiki", "Cyrillic Extended-C", "Georgian Extended",
+    "Sundanese Supplement", "Vedic Extensions", "Phonetic Extensions",
+    "Phonetic Extensions Supplement",
+    "Combining Diacritical Marks Supplement", "Latin Extended Additional",
+    "Greek Extended", "General Punctuation", "Superscripts and Subscripts",
+    "Currency Symbols", "Combining Diacritical Marks for Symbols",
+    "Letterlike Symbols", "Number Forms", "Arrows", "Mathematical Operators",
+    "Miscellaneous Technical", "Control Pictures",
+    "Optical Character Recognition", "Enclosed Alphanumerics", "Box Drawing",
+    "Block Elements", "Geometric Shapes", "Miscellaneous Symbols", "Dingbats",
+    "Miscellaneous Mathematical Symbols-A", "Supplemental Arrows-A",
+    "Braille Patterns", "Supplemental Arrows-B",
+    "Miscellaneous Mathematical Symbols-B",
+    "Supplemental Mathematical Operators", "Miscellaneous Symbols and Arrows",
+    "Glagolitic", "Latin Extended-C", "Coptic", "Georgian Supplement",
+    "Tifinagh", "Ethiopic Extended", "Cyrillic Extended-A",
+    "Supplemental Punctuation", "CJK Radicals Supplement", "Kangxi Radicals",
+    "Ideographic Description Characters", "CJK Symbols and Punctuation",
+    "Hiragana", "Katakana", "Bopomofo", "Hangul Compatibility Jamo", "Kanbun",
+    "Bopomofo Extended", "CJK Strokes", "Katakana Phonetic Extensions",
+    "Enclosed CJK Letters and Months", "CJK Compatibility",
+    "CJK Unified Ideographs Extension A", "Yijing Hexagram Symbols",
+    "CJK Unified Ideographs", "Yi Syllables", "Yi Radicals", "Lisu", "Vai",
+    "Cyrillic Extended-B", "Bamum", "Modifier Tone Letters",
+    "Latin Extended-D", "Syloti Nagri", "Common Indic Number Forms",
+    "Phags-pa", "Saurashtra", "Devanagari Extended", "Kayah Li", "Rejang",
+    "Hangul Jamo Extended-A", "Javanese", "Myanmar Extended-B", "Cham",
+    "Myanmar Extended-A", "Tai Viet", "Meetei Mayek Extensions",
+    "Ethiopic Extended-A", "Latin Extended-E", "Cherokee Supplement",
+    "Meetei Mayek", "Hangul Syllables", "Hangul Jamo Extended-B",
+    "High Surrogates", "High Private Use Surrogates", "Low Surrogates",
+    "Private Use Area", "CJK Compatibility Ideographs",
+    "Alphabetic Presentation Forms", "Arabic Presentation Forms-A",
+    "Variation Selectors", "Vertical Forms", "Combining Half Marks",
+    "CJK Compatibility Forms", "Small Form Variants",
+    "Arabic Presentation Forms-B", "Halfwidth and Fullwidth Forms",
+    "Specials", "Linear B Syllabary", "Linear B Ideograms", "Aegean Numbers",
+    "Ancient Greek Numbers", "Ancient Symbols", "Phaistos Disc", "Lycian",
+    "Carian", "Coptic Epact Numbers", "Old Italic", "Gothic", "Old Permic",
+    "Ugaritic", "Old Persian", "Deseret", "Shavian", "Osmanya", "Osage",
+    "Elbasan", "Caucasian Albanian", "Vithkuqi", "Linear A",
+    "Latin Extended-F", "Cypriot Syllabary", "Imperial Aramaic", "Palmyrene",
+    "Nabataean", "Hatran", "Phoenician", "Lydian", "Meroitic Hieroglyphs",
+    "Meroitic Cursive", "Kharoshthi", "Old South Arabian",
+    "Old North Arabian", "Manichaean", "Avestan", "Inscriptional Parthian",
+    "Inscriptional Pahlavi", "Psalter Pahlavi", "Old Turkic", "Old Hungarian",
+    "Hanifi Rohingya", "Rumi Numeral Symbols", "Yezidi", "Old Sogdian",
+    "Sogdian", "Old Uyghur", "Chorasmian", "Elymaic", "Brahmi", "Kaithi",
+    "Sora Sompeng", "Chakma", "Mahajani", "Sharada",
+    "Sinhala Archaic Numbers", "Khojki", "Multani", "Khudawadi", "Grantha",
+    "Newa", "Tirhuta", "Siddham", "Modi", "Mongolian Supplement", "Takri",
+    "Ahom", "Dogra", "Warang Citi", "Dives Akuru", "Nandinagari",
+    "Zanabazar Square", "Soyombo",
+    "Unified Canadian Aboriginal Syllabics Extended-A", "Pau Cin Hau",
+    "Bhaiksuki", "Marchen", "Masaram Gondi", "Gunjala Gondi", "Makasar",
+    "Lisu Supplement", "Tamil Supplement", "Cuneiform",
+    "Cuneiform Numbers and Punctuation", "Early Dynastic Cuneiform",
+    "Cypro-Minoan", "Egyptian Hieroglyphs",
+    "Egyptian Hieroglyph Format Controls", "Anatolian Hieroglyphs",
+    "Bamum Supplement", "Mro", "Tangsa", "Bassa Vah", "Pahawh Hmong",
+    "Medefaidrin", "Miao", "Ideographic Symbols and Punctuation", "Tangut",
+    "Tangut Components", "Khitan Small Script", "Tangut Supplement",
+    "Kana Extended-B", "Kana Supplement", "Kana Extended-A",
+    "Small Kana Extension", "Nushu", "Duployan", "Shorthand Format Controls",
+    "Znamenny Musical Notation", "Byzantine Musical Symbols",
+    "Musical Symbols", "Ancient Greek Musical Notation", "Mayan Numerals",
+    "Tai Xuan Jing Symbols", "Counting Rod Numerals",
+    "Mathematical Alphanumeric Symbols", "Sutton SignWriting",
+    "Latin Extended-G", "Glagolitic Supplement", "Nyiakeng Puachue Hmong",
+    "Toto", "Wancho", "Ethiopic Extended-B", "Mende Kikakui", "Adlam",
+    "Indic Siyaq Numbers", "Ottoman Siyaq Numbers",
+    "Arabic Mathematical Alphabetic Symbols", "Mahjong Tiles", "Domino Tiles",
+    "Playing Cards", "Enclosed Alphanumeric Supplement",
+    "Enclosed Ideographic Supplement",
+    "Miscellaneous Symbols and Pictographs", "Emoticons",
+    "Ornamental Dingbats", "Transport and Map Symbols", "Alchemical Symbols",
+    "Geometric Shapes Extended", "Supplemental Arrows-C",
+    "Supplemental Symbols and Pictographs", "Chess Symbols",
+    "Symbols and Pictographs Extended-A", "Symbols for Legacy Computing",
+    "CJK Unified Ideographs Extension B",
+    "CJK Unified Ideographs Extension C",
+    "CJK Unified Ideographs Extension D",
+    "CJK Unified Ideographs Extension E",
+    "CJK Unified Ideographs Extension F",
+    "CJK Compatibility Ideographs Supplement",
+    "CJK Unified Ideographs Extension G", "Tags",
+    "Variation Selectors Supplement", "Supplementary Private Use Area-A",
+    "Supplementary Private Use Area-B"};
+
   /* The following string arrays are used when converting Unicode character
   numbers for Korean Hangul syllables to caption strings.  Please refer to
   these on-line references:
@@ -201,7 +413,11 @@ public class CharMap4
   /* class variables */
 
   static Font buttonFont;         // font for buttons, labels, status, etc
-  static TreeMap captionMap;      // mapping of char values to mouse captions
+  static String cacheFolder;      // folder for cache files, or <null>
+  static CharMap4Captions captionLoad; // captions while loading, or <null>
+  static volatile CharMap4Captions captionMap; // char values to mouse captions
+  static volatile boolean captionReady; // true when all captions are loaded
+  static ArrayList<String[]> captionButtons; // buttons from loadConfig()
   static JButton clearButton;     // graphical button to clear <sampleDialog>
   static boolean clickReplace;    // true if mouse click replaces sample text
   static JButton copyButton;      // graphical button to copy all text
@@ -219,6 +435,7 @@ public class CharMap4
                                   // menu items for <menuPopup>
   static JPopupMenu menuPopup;    // pop-up menu invoked by <menuButton>
   static boolean mswinFlag;       // true if running on Microsoft Windows
+  static boolean probeAll;        // true if font scans probe every character
   static JComboBox nameDialog;    // graphical option for <fontName>
   static JButton reportCloseButton, reportLicenseButton, reportSummaryButton;
   static JFrame reportDialog;     // common dialog used by license or summary
@@ -228,6 +445,7 @@ public class CharMap4
   static JPopupMenu rightPopup;   // pop-up menu invoked by right mouse click
   static String rightSaveCaption; // saved caption text for right mouse click
   static int rightSaveChar, rightSaveGlyph; // saved character, glyph numbers
+  static JMenu rightShared;       // characters sharing glyph, for <rightPopup>
   static JTextField sampleDialog; // characters selected, copied to clipboard
   static JComboBox sizeDialog;    // graphical option for <fontSize>
   static JLabel statusDialog;     // for mouse captions to identify characters
@@ -253,7 +471,11 @@ public class CharMap4
     command line. */
 
     buttonFont = null;            // by default, don't use customized font
-    captionMap = null;            // mouse captions are not yet available
+    cacheFolder = System.getProperty("user.home") + File.separator
+      + DEFAULT_CACHE;            // default folder for font cache files
+    captionButtons = null;        // no button captions from data file yet
+    captionLoad = captionMap = null; // mouse captions are not yet available
+    captionReady = false;         // and won't be until loadConfig() is done
     clickReplace = false;         // default mouse click to insert sample text
     dataFile = DEFAULT_FILE;      // default file name for configuration data
     displayFont = null;           // during setup, there is no display font
@@ -264,6 +486,7 @@ public class CharMap4
     mainFrame = null;             // during setup, there is no GUI window
     maximizeFlag = false;         // by default, don't maximize our main window
     mswinFlag = System.getProperty("os.name").startsWith("Windows");
+    probeAll = false;             // by default, skip unassigned characters
     reportDialog = null;          // by default, report dialog not yet created
     sampleText = "";              // by default, there is no sample text
     windowHeight = DEFAULT_HEIGHT; // default window position and size
@@ -310,6 +533,21 @@ public class CharMap4
       else if (word.startsWith("-f") || (mswinFlag && word.startsWith("/f")))
         setFontName(args[i].substring(2)); // set font name for display text
 
+      else if (word.startsWith("-k") || (mswinFlag && word.startsWith("/k")))
+      {
+        cacheFolder = args[i].substring(2); // accept anything for folder name
+        if (cacheFolder.length() == 0) // an empty name means no font cache
+          cacheFolder = null;
+      }
+
+      else if (word.equals("-p") || (mswinFlag && word.equals("/p"))
+        || word.equals("-p1") || (mswinFlag && word.equals("/p1")))
+      {
+        probeAll = true;          // font scans probe every character number
+      }
+      else if (word.equals("-p0") || (mswinFlag && word.equals("/p0")))
+        probeAll = false;         // use cmap table or assigned blocks only
+
       else if (word.startsWith("-s") || (mswinFlag && word.startsWith("/s")))
         setPointSize(args[i].substring(2)); // set point size for display text
 
@@ -518,6 +756,12 @@ public class CharMap4
     if (buttonFont != null) rightCopyNotation.setFont(buttonFont);
     rightPopup.add(rightCopyNotation);
 
+    rightPopup.addSeparator();
+
+    rightShared = new JMenu("Shared Characters"); // filled in for each click
+    if (buttonFont != null) rightShared.setFont(buttonFont);
+    rightPopup.add(rightShared);
+
     /* Create a panel to display the grid of characters.  To the right of that
     is a vertical scroll bar that we control. */
 
@@ -658,6 +902,52 @@ public class CharMap4
 
 // ------------------------------------------------------------------------- //
 
+/*
+  blockName() method
+
+  Given an integer value for a character, return the name of the Unicode block
+  that contains it, or <null> if the character isn't in any block.  This is a
+  binary search of the BLOCK_FIRST table for the last block that starts at or
+  before the character.
+*/
+  static String blockName(int value)
+  {
+    int high = BLOCK_FIRST.length - 1; // highest block that may match
+    int low = 0;                  // lowest block that may match
+    while (low <= high)           // until there are no blocks left
+    {
+      int middle = (low + high) >>> 1; // split remaining blocks in half
+      if (value < BLOCK_FIRST[middle]) // does block start after character?
+        high = middle - 1;        // yes, look at earlier blocks
+      else if (value > BLOCK_LAST[middle]) // does block end before character?
+        low = middle + 1;         // yes, look at later blocks
+      else
+        return(BLOCK_NAMES[middle]); // character is inside this block
+    }
+    return(null);                 // character is between blocks
+  }
+
+
+/*
+  bundleFile() method
+
+  Return the name of the binary caption bundle for the configuration data file,
+  in the same folder as the font cache files, or <null> if there is no such
+  folder.  The default data file "CharMap4.txt" has the bundle "CharMap4.bin".
+*/
+  static File bundleFile()
+  {
+    if (cacheFolder == null)      // has user disabled the cache folder?
+      return(null);               // yes, there is no file name
+
+    String name = new File(dataFile).getName(); // without any folder names
+    int i = name.lastIndexOf('.'); // remove any file type (extension)
+    if (i > 0)
+      name = name.substring(0, i);
+    return(new File(cacheFolder, (name + ".bin")));
+  }
+
+
 /*
   captionGet() method
 
@@ -677,694 +967,25 @@ public class CharMap4
 
     /* Append the defined caption string, or create a generic caption. */
 
-    if (captionMap == null)       // have the caption strings been loaded?
+    CharMap4Captions captions = captionMap; // may change during this method
+    if (captions == null)         // have the caption strings been loaded?
       caption = null;             // no, follow through with generic caption
     else                          // yes, attempt to fetch defined caption
-      caption = (String) captionMap.get(new Integer(value)); // may be <null>
+      caption = captions.get(value); // may be <null>
 
     if (caption == null)          // was there a defined caption string?
     {
-      /* No caption string has been defined for this character.  Use the name
-      of the Unicode "block" or range instead, as obtained from the file:
-
-          http://www.unicode.org/Public/UNIDATA/Blocks.txt
-
-      Block names differ slightly from the "First" and "Last" names found in
-      the UNIDATA/UnicodeData.txt file.  Whatever you may think of the block
-      names, they are the official punctuation and spelling.
-
-      The following piece of code (except for the first line) is mechanically
-      generated from UNIDATA/Blocks.txt by the unpublished CharMapParse1 Java
-      application.  Do not edit this code manually.
-
-      Last updated from the 2021-01-22 UNIDATA/Blocks.txt file (14.0.0). */
-
-      if ((value >= 0x0000) && (value <= 0x007F)) // known Unicode range?
-        caption = "Basic Latin";
-      else if ((value >= 0x0080) && (value <= 0x00FF))
-        caption = "Latin-1 Supplement";
-      else if ((value >= 0x0100) && (value <= 0x017F))
-        caption = "Latin Extended-A";
-      else if ((value >= 0x0180) && (value <= 0x024F))
-        caption = "Latin Extended-B";
-      else if ((value >= 0x0250) && (value <= 0x02AF))
-        caption = "IPA Extensions";
-      else if ((value >= 0x02B0) && (value <= 0x02FF))
-        caption = "Spacing Modifier Letters";
-      else if ((value >= 0x0300) && (value <= 0x036F))
-        caption = "Combining Diacritical Marks";
-      else if ((value >= 0x0370) && (value <= 0x03FF))
-        caption = "Greek and Coptic";
-      else if ((value >= 0x0400) && (value <= 0x04FF))
-        caption = "Cyrillic";
-      else if ((value >= 0x0500) && (value <= 0x052F))
-        caption = "Cyrillic Supplement";
-      else if ((value >= 0x0530) && (value <= 0x058F))
-        caption = "Armenian";
-      else if ((value >= 0x0590) && (value <= 0x05FF))
-        caption = "Hebrew";
-      else if ((value >= 0x0600) && (value <= 0x06FF))
-        caption = "Arabic";
-      else if ((value >= 0x0700) && (value <= 0x074F))
-        caption = "Syriac";
-      else if ((value >= 0x0750) && (value <= 0x077F))
-        caption = "Arabic Supplement";
-      else if ((value >= 0x0780) && (value <= 0x07BF))
-        caption = "Thaana";
-      else if ((value >= 0x07C0) && (value <= 0x07FF))
-        caption = "NKo";
-      else if ((value >= 0x0800) && (value <= 0x083F))
-        caption = "Samaritan";
-      else if ((value >= 0x0840) && (value <= 0x085F))
-        caption = "Mandaic";
-      else if ((value >= 0x0860) && (value <= 0x086F))
-        caption = "Syriac Supplement";
-      else if ((value >= 0x0870) && (value <= 0x089F))
-        caption = "Arabic Extended-B";
-      else if ((value >= 0x08A0) && (value <= 0x08FF))
-        caption = "Arabic Extended-A";
-      else if ((value >= 0x0900) && (value <= 0x097F))
-        caption = "Devanagari";
-      else if ((value >= 0x0980) && (value <= 0x09FF))
-        caption = "Bengali";
-      else if ((value >= 0x0A00) && (value <= 0x0A7F))
-        caption = "Gurmukhi";
-      else if ((value >= 0x0A80) && (value <= 0x0AFF))
-        caption = "Gujarati";
-      else if ((value >= 0x0B00) && (value <= 0x0B7F))
-        caption = "Oriya";
-      else if ((value >= 0x0B80) && (value <= 0x0BFF))
-        caption = "Tamil";
-      else if ((value >= 0x0C00) && (value <= 0x0C7F))
-        caption = "Telugu";
-      else if ((value >= 0x0C80) && (value <= 0x0CFF))
-        caption = "Kannada";
-      else if ((value >= 0x0D00) && (value <= 0x0D7F))
-        caption = "Malayalam";
-      else if ((value >= 0x0D80) && (value <= 0x0DFF))
-        caption = "Sinhala";
-      else if ((value >= 0x0E00) && (value <= 0x0E7F))
-        caption = "Thai";
-      else if ((value >= 0x0E80) && (value <= 0x0EFF))
-        caption = "Lao";
-      else if ((value >= 0x0F00) && (value <= 0x0FFF))
-        caption = "Tibetan";
-      else if ((value >= 0x1000) && (value <= 0x109F))
-        caption = "Myanmar";
-      else if ((value >= 0x10A0) && (value <= 0x10FF))
-        caption = "Georgian";
-      else if ((value >= 0x1100) && (value <= 0x11FF))
-        caption = "Hangul Jamo";
-      else if ((value >= 0x1200) && (value <= 0x137F))
-        caption = "Ethiopic";
-      else if ((value >= 0x1380) && (value <= 0x139F))
-        caption = "Ethiopic Supplement";
-      else if ((value >= 0x13A0) && (value <= 0x13FF))
-        caption = "Cherokee";
-      else if ((value >= 0x1400) && (value <= 0x167F))
-        caption = "Unified Canadian Aboriginal Syllabics";
-      else if ((value >= 0x1680) && (value <= 0x169F))
-        caption = "Ogham";
-      else if ((value >= 0x16A0) && (value <= 0x16FF))
-        caption = "Runic";
-      else if ((value >= 0x1700) && (value <= 0x171F))
-        caption = "Tagalog";
-      else if ((value >= 0x1720) && (value <= 0x173F))
-        caption = "Hanunoo";
-      else if ((value >= 0x1740) && (value <= 0x175F))
-        caption = "Buhid";
-      else if ((value >= 0x1760) && (value <= 0x177F))
-        caption = "Tagbanwa";
-      else if ((value >= 0x1780) && (value <= 0x17FF))
-        caption = "Khmer";
-      else if ((value >= 0x1800) && (value <= 0x18AF))
-        caption = "Mongolian";
-      else if ((value >= 0x18B0) && (value <= 0x18FF))
-        caption = "Unified Canadian Aboriginal Syllabics Extended";
-      else if ((value >= 0x1900) && (value <= 0x194F))
-        caption = "Limbu";
-      else if ((value >= 0x1950) && (value <= 0x197F))
-        caption = "Tai Le";
-      else if ((value >= 0x1980) && (value <= 0x19DF))
-        caption = "New Tai Lue";
-      else if ((value >= 0x19E0) && (value <= 0x19FF))
-        caption = "Khmer Symbols";
-      else if ((value >= 0x1A00) && (value <= 0x1A1F))
-        caption = "Buginese";
-      else if ((value >= 0x1A20) && (value <= 0x1AAF))
-        caption = "Tai Tham";
-      else if ((value >= 0x1AB0) && (value <= 0x1AFF))
-        caption = "Combining Diacritical Marks Extended";
-      else if ((value >= 0x1B00) && (value <= 0x1B7F))
-        caption = "Balinese";
-      else if ((value >= 0x1B80) && (value <= 0x1BBF))
-        caption = "Sundanese";
-      else if ((value >= 0x1BC0) && (value <= 0x1BFF))
-        caption = "Batak";
-      else if ((value >= 0x1C00) && (value <= 0x1C4F))
-        caption = "Lepcha";
-      else if ((value >= 0x1C50) && (value <= 0x1C7F))
-        caption = "Ol Chiki";
-      else if ((value >= 0x1C80) && (value <= 0x1C8F))
-        caption = "Cyrillic Extended-C";
-      else if ((value >= 0x1C90) && (value <= 0x1CBF))
-        caption = "Georgian Extended";
-      else if ((value >= 0x1CC0) && (value <= 0x1CCF))
-        caption = "Sundanese Supplement";
-      else if ((value >= 0x1CD0) && (value <= 0x1CFF))
-        caption = "Vedic Extensions";
-      else if ((value >= 0x1D00) && (value <= 0x1D7F))
-        caption = "Phonetic Extensions";
-      else if ((value >= 0x1D80) && (value <= 0x1DBF))
-        caption = "Phonetic Extensions Supplement";
-      else if ((value >= 0x1DC0) && (value <= 0x1DFF))
-        caption = "Combining Diacritical Marks Supplement";
-      else if ((value >= 0x1E00) && (value <= 0x1EFF))
-        caption = "Latin Extended Additional";
-      else if ((value >= 0x1F00) && (value <= 0x1FFF))
-        caption = "Greek Extended";
-      else if ((value >= 0x2000) && (value <= 0x206F))
-        caption = "General Punctuation";
-      else if ((value >= 0x2070) && (value <= 0x209F))
-        caption = "Superscripts and Subscripts";
-      else if ((value >= 0x20A0) && (value <= 0x20CF))
-        caption = "Currency Symbols";
-      else if ((value >= 0x20D0) && (value <= 0x20FF))
-        caption = "Combining Diacritical Marks for Symbols";
-      else if ((value >= 0x2100) && (value <= 0x214F))
-        caption = "Letterlike Symbols";
-      else if ((value >= 0x2150) && (value <= 0x218F))
-        caption = "Number Forms";
-      else if ((value >= 0x2190) && (value <= 0x21FF))
-        caption = "Arrows";
-      else if ((value >= 0x2200) && (value <= 0x22FF))
-        caption = "Mathematical Operators";
-      else if ((value >= 0x2300) && (value <= 0x23FF))
-        caption = "Miscellaneous Technical";
-      else if ((value >= 0x2400) && (value <= 0x243F))
-        caption = "Control Pictures";
-      else if ((value >= 0x2440) && (value <= 0x245F))
-        caption = "Optical Character Recognition";
-      else if ((value >= 0x2460) && (value <= 0x24FF))
-        caption = "Enclosed Alphanumerics";
-      else if ((value >= 0x2500) && (value <= 0x257F))
-        caption = "Box Drawing";
-      else if ((value >= 0x2580) && (value <= 0x259F))
-        caption = "Block Elements";
-      else if ((value >= 0x25A0) && (value <= 0x25FF))
-        caption = "Geometric Shapes";
-      else if ((value >= 0x2600) && (value <= 0x26FF))
-        caption = "Miscellaneous Symbols";
-      else if ((value >= 0x2700) && (value <= 0x27BF))
-        caption = "Dingbats";
-      else if ((value >= 0x27C0) && (value <= 0x27EF))
-        caption = "Miscellaneous Mathematical Symbols-A";
-      else if ((value >= 0x27F0) && (value <= 0x27FF))
-        caption = "Supplemental Arrows-A";
-      else if ((value >= 0x2800) && (value <= 0x28FF))
-        caption = "Braille Patterns";
-      else if ((value >= 0x2900) && (value <= 0x297F))
-        caption = "Supplemental Arrows-B";
-      else if ((value >= 0x2980) && (value <= 0x29FF))
-        caption = "Miscellaneous Mathematical Symbols-B";
-      else if ((value >= 0x2A00) && (value <= 0x2AFF))
-        caption = "Supplemental Mathematical Operators";
-      else if ((value >= 0x2B00) && (value <= 0x2BFF))
-        caption = "Miscellaneous Symbols and Arrows";
-      else if ((value >= 0x2C00) && (value <= 0x2C5F))
-        caption = "Glagolitic";
-      else if ((value >= 0x2C60) && (value <= 0x2C7F))
-        caption = "Latin Extended-C";
-      else if ((value >= 0x2C80) && (value <= 0x2CFF))
-        caption = "Coptic";
-      else if ((value >= 0x2D00) && (value <= 0x2D2F))
-        caption = "Georgian Supplement";
-      else if ((value >= 0x2D30) && (value <= 0x2D7F))
-        caption = "Tifinagh";
-      else if ((value >= 0x2D80) && (value <= 0x2DDF))
-        caption = "Ethiopic Extended";
-      else if ((value >= 0x2DE0) && (value <= 0x2DFF))
-        caption = "Cyrillic Extended-A";
-      else if ((value >= 0x2E00) && (value <= 0x2E7F))
-        caption = "Supplemental Punctuation";
-      else if ((value >= 0x2E80) && (value <= 0x2EFF))
-        caption = "CJK Radicals Supplement";
-      else if ((value >= 0x2F00) && (value <= 0x2FDF))
-        caption = "Kangxi Radicals";
-      else if ((value >= 0x2FF0) && (value <= 0x2FFF))
-        caption = "Ideographic Description Characters";
-      else if ((value >= 0x3000) && (value <= 0x303F))
-        caption = "CJK Symbols and Punctuation";
-      else if ((value >= 0x3040) && (value <= 0x309F))
-        caption = "Hiragana";
-      else if ((value >= 0x30A0) && (value <= 0x30FF))
-        caption = "Katakana";
-      else if ((value >= 0x3100) && (value <= 0x312F))
-        caption = "Bopomofo";
-      else if ((value >= 0x3130) && (value <= 0x318F))
-        caption = "Hangul Compatibility Jamo";
-      else if ((value >= 0x3190) && (value <= 0x319F))
-        caption = "Kanbun";
-      else if ((value >= 0x31A0) && (value <= 0x31BF))
-        caption = "Bopomofo Extended";
-      else if ((value >= 0x31C0) && (value <= 0x31EF))
-        caption = "CJK Strokes";
-      else if ((value >= 0x31F0) && (value <= 0x31FF))
-        caption = "Katakana Phonetic Extensions";
-      else if ((value >= 0x3200) && (value <= 0x32FF))
-        caption = "Enclosed CJK Letters and Months";
-      else if ((value >= 0x3300) && (value <= 0x33FF))
-        caption = "CJK Compatibility";
-      else if ((value >= 0x3400) && (value <= 0x4DBF))
-        caption = "CJK Unified Ideographs Extension A";
-      else if ((value >= 0x4DC0) && (value <= 0x4DFF))
-        caption = "Yijing Hexagram Symbols";
-      else if ((value >= 0x4E00) && (value <= 0x9FFF))
-        caption = "CJK Unified Ideographs";
-      else if ((value >= 0xA000) && (value <= 0xA48F))
-        caption = "Yi Syllables";
-      else if ((value >= 0xA490) && (value <= 0xA4CF))
-        caption = "Yi Radicals";
-      else if ((value >= 0xA4D0) && (value <= 0xA4FF))
-        caption = "Lisu";
-      else if ((value >= 0xA500) && (value <= 0xA63F))
-        caption = "Vai";
-      else if ((value >= 0xA640) && (value <= 0xA69F))
-        caption = "Cyrillic Extended-B";
-      else if ((value >= 0xA6A0) && (value <= 0xA6FF))
-        caption = "Bamum";
-      else if ((value >= 0xA700) && (value <= 0xA71F))
-        caption = "Modifier Tone Letters";
-      else if ((value >= 0xA720) && (value <= 0xA7FF))
-        caption = "Latin Extended-D";
-      else if ((value >= 0xA800) && (value <= 0xA82F))
-        caption = "Syloti Nagri";
-      else if ((value >= 0xA830) && (value <= 0xA83F))
-        caption = "Common Indic Number Forms";
-      else if ((value >= 0xA840) && (value <= 0xA87F))
-        caption = "Phags-pa";
-      else if ((value >= 0xA880) && (value <= 0xA8DF))
-        caption = "Saurashtra";
-      else if ((value >= 0xA8E0) && (value <= 0xA8FF))
-        caption = "Devanagari Extended";
-      else if ((value >= 0xA900) && (value <= 0xA92F))
-        caption = "Kayah Li";
-      else if ((value >= 0xA930) && (value <= 0xA95F))
-        caption = "Rejang";
-      else if ((value >= 0xA960) && (value <= 0xA97F))
-        caption = "Hangul Jamo Extended-A";
-      else if ((value >= 0xA980) && (value <= 0xA9DF))
-        caption = "Javanese";
-      else if ((value >= 0xA9E0) && (value <= 0xA9FF))
-        caption = "Myanmar Extended-B";
-      else if ((value >= 0xAA00) && (value <= 0xAA5F))
-        caption = "Cham";
-      else if ((value >= 0xAA60) && (value <= 0xAA7F))
-        caption = "Myanmar Extended-A";
-      else if ((value >= 0xAA80) && (value <= 0xAADF))
-        caption = "Tai Viet";
-      else if ((value >= 0xAAE0) && (value <= 0xAAFF))
-        caption = "Meetei Mayek Extensions";
-      else if ((value >= 0xAB00) && (value <= 0xAB2F))
-        caption = "Ethiopic Extended-A";
-      else if ((value >= 0xAB30) && (value <= 0xAB6F))
-        caption = "Latin Extended-E";
-      else if ((value >= 0xAB70) && (value <= 0xABBF))
-        caption = "Cherokee Supplement";
-      else if ((value >= 0xABC0) && (value <= 0xABFF))
-        caption = "Meetei Mayek";
-      else if ((value >= 0xAC00) && (value <= 0xD7AF))
-        caption = "Hangul Syllables";
-      else if ((value >= 0xD7B0) && (value <= 0xD7FF))
-        caption = "Hangul Jamo Extended-B";
-      else if ((value >= 0xD800) && (value <= 0xDB7F))
-        caption = "High Surrogates";
-      else if ((value >= 0xDB80) && (value <= 0xDBFF))
-        caption = "High Private Use Surrogates";
-      else if ((value >= 0xDC00) && (value <= 0xDFFF))
-        caption = "Low Surrogates";
-      else if ((value >= 0xE000) && (value <= 0xF8FF))
-        caption = "Private Use Area";
-      else if ((value >= 0xF900) && (value <= 0xFAFF))
-        caption = "CJK Compatibility Ideographs";
-      else if ((value >= 0xFB00) && (value <= 0xFB4F))
-        caption = "Alphabetic Presentation Forms";
-      else if ((value >= 0xFB50) && (value <= 0xFDFF))
-        caption = "Arabic Presentation Forms-A";
-      else if ((value >= 0xFE00) && (value <= 0xFE0F))
-        caption = "Variation Selectors";
-      else if ((value >= 0xFE10) && (value <= 0xFE1F))
-        caption = "Vertical Forms";
-      else if ((value >= 0xFE20) && (value <= 0xFE2F))
-        caption = "Combining Half Marks";
-      else if ((value >= 0xFE30) && (value <= 0xFE4F))
-        caption = "CJK Compatibility Forms";
-      else if ((value >= 0xFE50) && (value <= 0xFE6F))
-        caption = "Small Form Variants";
-      else if ((value >= 0xFE70) && (value <= 0xFEFF))
-        caption = "Arabic Presentation Forms-B";
-      else if ((value >= 0xFF00) && (value <= 0xFFEF))
-        caption = "Halfwidth and Fullwidth Forms";
-      else if ((value >= 0xFFF0) && (value <= 0xFFFF))
-        caption = "Specials";
-      else if ((value >= 0x10000) && (value <= 0x1007F))
-        caption = "Linear B Syllabary";
-      else if ((value >= 0x10080) && (value <= 0x100FF))
-        caption = "Linear B Ideograms";
-      else if ((value >= 0x10100) && (value <= 0x1013F))
-        caption = "Aegean Numbers";
-      else if ((value >= 0x10140) && (value <= 0x1018F))
-        caption = "Ancient Greek Numbers";
-      else if ((value >= 0x10190) && (value <= 0x101CF))
-        caption = "Ancient Symbols";
-      else if ((value >= 0x101D0) && (value <= 0x101FF))
-        caption = "Phaistos Disc";
-      else if ((value >= 0x10280) && (value <= 0x1029F))
-        caption = "Lycian";
-      else if ((value >= 0x102A0) && (value <= 0x102DF))
-        caption = "Carian";
-      else if ((value >= 0x102E0) && (value <= 0x102FF))
-        caption = "Coptic Epact Numbers";
-      else if ((value >= 0x10300) && (value <= 0x1032F))
-        caption = "Old Italic";
-      else if ((value >= 0x10330) && (value <= 0x1034F))
-        caption = "Gothic";
-      else if ((value >= 0x10350) && (value <= 0x1037F))
-        caption = "Old Permic";
-      else if ((value >= 0x10380) && (value <= 0x1039F))
-        caption = "Ugaritic";
-      else if ((value >= 0x103A0) && (value <= 0x103DF))
-        caption = "Old Persian";
-      else if ((value >= 0x10400) && (value <= 0x1044F))
-        caption = "Deseret";
-      else if ((value >= 0x10450) && (value <= 0x1047F))
-        caption = "Shavian";
-      else if ((value >= 0x10480) && (value <= 0x104AF))
-        caption = "Osmanya";
-      else if ((value >= 0x104B0) && (value <= 0x104FF))
-        caption = "Osage";
-      else if ((value >= 0x10500) && (value <= 0x1052F))
-        caption = "Elbasan";
-      else if ((value >= 0x10530) && (value <= 0x1056F))
-        caption = "Caucasian Albanian";
-      else if ((value >= 0x10570) && (value <= 0x105BF))
-        caption = "Vithkuqi";
-      else if ((value >= 0x10600) && (value <= 0x1077F))
-        caption = "Linear A";
-      else if ((value >= 0x10780) && (value <= 0x107BF))
-        caption = "Latin Extended-F";
-      else if ((value >= 0x10800) && (value <= 0x1083F))
-        caption = "Cypriot Syllabary";
-      else if ((value >= 0x10840) && (value <= 0x1085F))
-        caption = "Imperial Aramaic";
-      else if ((value >= 0x10860) && (value <= 0x1087F))
-        caption = "Palmyrene";
-      else if ((value >= 0x10880) && (value <= 0x108AF))
-        caption = "Nabataean";
-      else if ((value >= 0x108E0) && (value <= 0x108FF))
-        caption = "Hatran";
-      else if ((value >= 0x10900) && (value <= 0x1091F))
-        caption = "Phoenician";
-      else if ((value >= 0x10920) && (value <= 0x1093F))
-        caption = "Lydian";
-      else if ((value >= 0x10980) && (value <= 0x1099F))
-        caption = "Meroitic Hieroglyphs";
-      else if ((value >= 0x109A0) && (value <= 0x109FF))
-        caption = "Meroitic Cursive";
-      else if ((value >= 0x10A00) && (value <= 0x10A5F))
-        caption = "Kharoshthi";
-      else if ((value >= 0x10A60) && (value <= 0x10A7F))
-        caption = "Old South Arabian";
-      else if ((value >= 0x10A80) && (value <= 0x10A9F))
-        caption = "Old North Arabian";
-      else if ((value >= 0x10AC0) && (value <= 0x10AFF))
-        caption = "Manichaean";
-      else if ((value >= 0x10B00) && (value <= 0x10B3F))
-        caption = "Avestan";
-      else if ((value >= 0x10B40) && (value <= 0x10B5F))
-        caption = "Inscriptional Parthian";
-      else if ((value >= 0x10B60) && (value <= 0x10B7F))
-        caption = "Inscriptional Pahlavi";
-      else if ((value >= 0x10B80) && (value <= 0x10BAF))
-        caption = "Psalter Pahlavi";
-      else if ((value >= 0x10C00) && (value <= 0x10C4F))
-        caption = "Old Turkic";
-      else if ((value >= 0x10C80) && (value <= 0x10CFF))
-        caption = "Old Hungarian";
-      else if ((value >= 0x10D00) && (value <= 0x10D3F))
-        caption = "Hanifi Rohingya";
-      else if ((value >= 0x10E60) && (value <= 0x10E7F))
-        caption = "Rumi Numeral Symbols";
-      else if ((value >= 0x10E80) && (value <= 0x10EBF))
-        caption = "Yezidi";
-      else if ((value >= 0x10F00) && (value <= 0x10F2F))
-        caption = "Old Sogdian";
-      else if ((value >= 0x10F30) && (value <= 0x10F6F))
-        caption = "Sogdian";
-      else if ((value >= 0x10F70) && (value <= 0x10FAF))
-        caption = "Old Uyghur";
-      else if ((value >= 0x10FB0) && (value <= 0x10FDF))
-        caption = "Chorasmian";
-      else if ((value >= 0x10FE0) && (value <= 0x10FFF))
-        caption = "Elymaic";
-      else if ((value >= 0x11000) && (value <= 0x1107F))
-        caption = "Brahmi";
-      else if ((value >= 0x11080) && (value <= 0x110CF))
-        caption = "Kaithi";
-      else if ((value >= 0x110D0) && (value <= 0x110FF))
-        caption = "Sora Sompeng";
-      else if ((value >= 0x11100) && (value <= 0x1114F))
-        caption = "Chakma";
-      else if ((value >= 0x11150) && (value <= 0x1117F))
-        caption = "Mahajani";
-      else if ((value >= 0x11180) && (value <= 0x111DF))
-        caption = "Sharada";
-      else if ((value >= 0x111E0) && (value <= 0x111FF))
-        caption = "Sinhala Archaic Numbers";
-      else if ((value >= 0x11200) && (value <= 0x1124F))
-        caption = "Khojki";
-      else if ((value >= 0x11280) && (value <= 0x112AF))
-        caption = "Multani";
-      else if ((value >= 0x112B0) && (value <= 0x112FF))
-        caption = "Khudawadi";
-      else if ((value >= 0x11300) && (value <= 0x1137F))
-        caption = "Grantha";
-      else if ((value >= 0x11400) && (value <= 0x1147F))
-        caption = "Newa";
-      else if ((value >= 0x11480) && (value <= 0x114DF))
-        caption = "Tirhuta";
-      else if ((value >= 0x11580) && (value <= 0x115FF))
-        caption = "Siddham";
-      else if ((value >= 0x11600) && (value <= 0x1165F))
-        caption = "Modi";
-      else if ((value >= 0x11660) && (value <= 0x1167F))
-        caption = "Mongolian Supplement";
-      else if ((value >= 0x11680) && (value <= 0x116CF))
-        caption = "Takri";
-      else if ((value >= 0x11700) && (value <= 0x1174F))
-        caption = "Ahom";
-      else if ((value >= 0x11800) && (value <= 0x1184F))
-        caption = "Dogra";
-      else if ((value >= 0x118A0) && (value <= 0x118FF))
-        caption = "Warang Citi";
-      else if ((value >= 0x11900) && (value <= 0x1195F))
-        caption = "Dives Akuru";
-      else if ((value >= 0x119A0) && (value <= 0x119FF))
-        caption = "Nandinagari";
-      else if ((value >= 0x11A00) && (value <= 0x11A4F))
-        caption = "Zanabazar Square";
-      else if ((value >= 0x11A50) && (value <= 0x11AAF))
-        caption = "Soyombo";
-      else if ((value >= 0x11AB0) && (value <= 0x11ABF))
-        caption = "Unified Canadian Aboriginal Syllabics Extended-A";
-      else if ((value >= 0x11AC0) && (value <= 0x11AFF))
-        caption = "Pau Cin Hau";
-      else if ((value >= 0x11C00) && (value <= 0x11C6F))
-        caption = "Bhaiksuki";
-      else if ((value >= 0x11C70) && (value <= 0x11CBF))
-        caption = "Marchen";
-      else if ((value >= 0x11D00) && (value <= 0x11D5F))
-        caption = "Masaram Gondi";
-      else if ((value >= 0x11D60) && (value <= 0x11DAF))
-        caption = "Gunjala Gondi";
-      else if ((value >= 0x11EE0) && (value <= 0x11EFF))
-        caption = "Makasar";
-      else if ((value >= 0x11FB0) && (value <= 0x11FBF))
-        caption = "Lisu Supplement";
-      else if ((value >= 0x11FC0) && (value <= 0x11FFF))
-        caption = "Tamil Supplement";
-      else if ((value >= 0x12000) && (value <= 0x123FF))
-        caption = "Cuneiform";
-      else if ((value >= 0x12400) && (value <= 0x1247F))
-        caption = "Cuneiform Numbers and Punctuation";
-      else if ((value >= 0x12480) && (value <= 0x1254F))
-        caption = "Early Dynastic Cuneiform";
-      else if ((value >= 0x12F90) && (value <= 0x12FFF))
-        caption = "Cypro-Minoan";
-      else if ((value >= 0x13000) && (value <= 0x1342F))
-        caption = "Egyptian Hieroglyphs";
-      else if ((value >= 0x13430) && (value <= 0x1343F))
-        caption = "Egyptian Hieroglyph Format Controls";
-      else if ((value >= 0x14400) && (value <= 0x1467F))
-        caption = "Anatolian Hieroglyphs";
-      else if ((value >= 0x16800) && (value <= 0x16A3F))
-        caption = "Bamum Supplement";
-      else if ((value >= 0x16A40) && (value <= 0x16A6F))
-        caption = "Mro";
-      else if ((value >= 0x16A70) && (value <= 0x16ACF))
-        caption = "Tangsa";
-      else if ((value >= 0x16AD0) && (value <= 0x16AFF))
-        caption = "Bassa Vah";
-      else if ((value >= 0x16B00) && (value <= 0x16B8F))
-        caption = "Pahawh Hmong";
-      else if ((value >= 0x16E40) && (value <= 0x16E9F))
-        caption = "Medefaidrin";
-      else if ((value >= 0x16F00) && (value <= 0x16F9F))
-        caption = "Miao";
-      else if ((value >= 0x16FE0) && (value <= 0x16FFF))
-        caption = "Ideographic Symbols and Punctuation";
-      else if ((value >= 0x17000) && (value <= 0x187FF))
-        caption = "Tangut";
-      else if ((value >= 0x18800) && (value <= 0x18AFF))
-        caption = "Tangut Components";
-      else if ((value >= 0x18B00) && (value <= 0x18CFF))
-        caption = "Khitan Small Script";
-      else if ((value >= 0x18D00) && (value <= 0x18D7F))
-        caption = "Tangut Supplement";
-      else if ((value >= 0x1AFF0) && (value <= 0x1AFFF))
-        caption = "Kana Extended-B";
-      else if ((value >= 0x1B000) && (value <= 0x1B0FF))
-        caption = "Kana Supplement";
-      else if ((value >= 0x1B100) && (value <= 0x1B12F))
-        caption = "Kana Extended-A";
-      else if ((value >= 0x1B130) && (value <= 0x1B16F))
-        caption = "Small Kana Extension";
-      else if ((value >= 0x1B170) && (value <= 0x1B2FF))
-        caption = "Nushu";
-      else if ((value >= 0x1BC00) && (value <= 0x1BC9F))
-        caption = "Duployan";
-      else if ((value >= 0x1BCA0) && (value <= 0x1BCAF))
-        caption = "Shorthand Format Controls";
-      else if ((value >= 0x1CF00) && (value <= 0x1CFCF))
-        caption = "Znamenny Musical Notation";
-      else if ((value >= 0x1D000) && (value <= 0x1D0FF))
-        caption = "Byzantine Musical Symbols";
-      else if ((value >= 0x1D100) && (value <= 0x1D1FF))
-        caption = "Musical Symbols";
-      else if ((value >= 0x1D200) && (value <= 0x1D24F))
-        caption = "Ancient Greek Musical Notation";
-      else if ((value >= 0x1D2E0) && (value <= 0x1D2FF))
-        caption = "Mayan Numerals";
-      else if ((value >= 0x1D300) && (value <= 0x1D35F))
-        caption = "Tai Xuan Jing Symbols";
-      else if ((value >= 0x1D360) && (value <= 0x1D37F))
-        caption = "Counting Rod Numerals";
-      else if ((value >= 0x1D400) && (value <= 0x1D7FF))
-        caption = "Mathematical Alphanumeric Symbols";
-      else if ((value >= 0x1D800) && (value <= 0x1DAAF))
-        caption = "Sutton SignWriting";
-      else if ((value >= 0x1DF00) && (value <= 0x1DFFF))
-        caption = "Latin Extended-G";
-      else if ((value >= 0x1E000) && (value <= 0x1E02F))
-        caption = "Glagolitic Supplement";
-      else if ((value >= 0x1E100) && (value <= 0x1E14F))
-        caption = "Nyiakeng Puachue Hmong";
-      else if ((value >= 0x1E290) && (value <= 0x1E2BF))
-        caption = "Toto";
-      else if ((value >= 0x1E2C0) && (value <= 0x1E2FF))
-        caption = "Wancho";
-      else if ((value >= 0x1E7E0) && (value <= 0x1E7FF))
-        caption = "Ethiopic Extended-B";
-      else if ((value >= 0x1E800) && (value <= 0x1E8DF))
-        caption = "Mende Kikakui";
-      else if ((value >= 0x1E900) && (value <= 0x1E95F))
-        caption = "Adlam";
-      else if ((value >= 0x1EC70) && (value <= 0x1ECBF))
-        caption = "Indic Siyaq Numbers";
-      else if ((value >= 0x1ED00) && (value <= 0x1ED4F))
-        caption = "Ottoman Siyaq Numbers";
-      else if ((value >= 0x1EE00) && (value <= 0x1EEFF))
-        caption = "Arabic Mathematical Alphabetic Symbols";
-      else if ((value >= 0x1F000) && (value <= 0x1F02F))
-        caption = "Mahjong Tiles";
-      else if ((value >= 0x1F030) && (value <= 0x1F09F))
-        caption = "Domino Tiles";
-      else if ((value >= 0x1F0A0) && (value <= 0x1F0FF))
-        caption = "Playing Cards";
-      else if ((value >= 0x1F100) && (value <= 0x1F1FF))
-        caption = "Enclosed Alphanumeric Supplement";
-      else if ((value >= 0x1F200) && (value <= 0x1F2FF))
-        caption = "Enclosed Ideographic Supplement";
-      else if ((value >= 0x1F300) && (value <= 0x1F5FF))
-        caption = "Miscellaneous Symbols and Pictographs";
-      else if ((value >= 0x1F600) && (value <= 0x1F64F))
-        caption = "Emoticons";
-      else if ((value >= 0x1F650) && (value <= 0x1F67F))
-        caption = "Ornamental Dingbats";
-      else if ((value >= 0x1F680) && (value <= 0x1F6FF))
-        caption = "Transport and Map Symbols";
-      else if ((value >= 0x1F700) && (value <= 0x1F77F))
-        caption = "Alchemical Symbols";
-      else if ((value >= 0x1F780) && (value <= 0x1F7FF))
-        caption = "Geometric Shapes Extended";
-      else if ((value >= 0x1F800) && (value <= 0x1F8FF))
-        caption = "Supplemental Arrows-C";
-      else if ((value >= 0x1F900) && (value <= 0x1F9FF))
-        caption = "Supplemental Symbols and Pictographs";
-      else if ((value >= 0x1FA00) && (value <= 0x1FA6F))
-        caption = "Chess Symbols";
-      else if ((value >= 0x1FA70) && (value <= 0x1FAFF))
-        caption = "Symbols and Pictographs Extended-A";
-      else if ((value >= 0x1FB00) && (value <= 0x1FBFF))
-        caption = "Symbols for Legacy Computing";
-      else if ((value >= 0x20000) && (value <= 0x2A6DF))
-        caption = "CJK Unified Ideographs Extension B";
-      else if ((value >= 0x2A700) && (value <= 0x2B73F))
-        caption = "CJK Unified Ideographs Extension C";
-      else if ((value >= 0x2B740) && (value <= 0x2B81F))
-        caption = "CJK Unified Ideographs Extension D";
-      else if ((value >= 0x2B820) && (value <= 0x2CEAF))
-        caption = "CJK Unified Ideographs Extension E";
-      else if ((value >= 0x2CEB0) && (value <= 0x2EBEF))
-        caption = "CJK Unified Ideographs Extension F";
-      else if ((value >= 0x2F800) && (value <= 0x2FA1F))
-        caption = "CJK Compatibility Ideographs Supplement";
-      else if ((value >= 0x30000) && (value <= 0x3134F))
-        caption = "CJK Unified Ideographs Extension G";
-      else if ((value >= 0xE0000) && (value <= 0xE007F))
-        caption = "Tags";
-      else if ((value >= 0xE0100) && (value <= 0xE01EF))
-        caption = "Variation Selectors Supplement";
-      else if ((value >= 0xF0000) && (value <= 0xFFFFF))
-        caption = "Supplementary Private Use Area-A";
-      else if ((value >= 0x100000) && (value <= 0x10FFFF))
-        caption = "Supplementary Private Use Area-B";
+      /* No caption string has been defined for this character.  Generate a
+      caption if the character is in a regular range, or else use the name of
+      the Unicode "block" or range. */
 
-      /* Korean Hangul syllables are so regular that they can be re-created
-      from Unicode character numbers ... if so desired.  Break into initial,
-      medial (middle), and final phonetic pieces.  For the code below to be
-      effective, the U+AC00 to U+D7AF range above must be commented out. */
-
-//    else if ((value >= 0xAC00) && (value <= 0xD7A3)) // Korean Hangul range?
-//    {
-//      int first = value - 0xAC00; // set zero point for following calculation
-//      int third = first % 28;   // index of "final" phonetic piece
-//      first = first / 28;       // remove value of final piece
-//      int second = first % 21;  // index of "medial" phonetic piece
-//      first = first / 21;       // index of "initial" phonetic piece
-//
-//      caption = "Hangul Syllable " + HANGUL_NAME_INITIAL[first] + " "
-//        + HANGUL_NAME_MEDIAL[second] + " " + HANGUL_NAME_FINAL[third];
-//      caption = caption.trim(); // remove any unused third piece
-//      String sound = HANGUL_SOUND_INITIAL[first]
-//        + HANGUL_SOUND_MEDIAL[second] + HANGUL_SOUND_FINAL[third];
-//      caption += " (" + sound.charAt(0) + sound.substring(1).toLowerCase()
-//        + ")";                  // first "letter" may be from second piece
-//    }
+      caption = captionMake(value); // may be <null>
+      if (caption == null)        // not in a range with generated captions
+        caption = blockName(value); // may be <null>
 
       /* Default to a numeric caption in decimal if nothing else found. */
 
-      else                        // no defined caption, unknown character
+      if (caption == null)        // no defined caption, unknown character
         caption = "decimal " + formatComma.format(value);
     }
     buffer.append(caption);       // append selected caption to result
@@ -1373,6 +994,56 @@ public class CharMap4
   } // end of captionGet() method
 
 
+/*
+  captionMake() method
+
+  Some Unicode ranges are so regular that captions can be generated from the
+  character number, instead of being stored in the data file.  Return the
+  generated caption, or <null> if the character isn't in one of these ranges.
+  Captions from the data file are still used first, so a line in the data
+  file can replace a generated caption.
+*/
+  static String captionMake(int value)
+  {
+    String caption;               // generated caption string or <null>
+
+    if ((value >= 0xAC00) && (value <= 0xD7A3)) // Korean Hangul range?
+    {
+      /* Korean Hangul syllables are so regular that they can be re-created
+      from Unicode character numbers.  Break into initial, medial (middle),
+      and final phonetic pieces. */
+
+      int first = value - 0xAC00; // set zero point for following calculation
+      int third = first % 28;     // index of "final" phonetic piece
+      first = first / 28;         // remove value of final piece
+      int second = first % 21;    // index of "medial" phonetic piece
+      first = first / 21;         // index of "initial" phonetic piece
+
+      caption = "Hangul Syllable " + HANGUL_NAME_INITIAL[first] + " "
+        + HANGUL_NAME_MEDIAL[second] + " " + HANGUL_NAME_FINAL[third];
+      caption = caption.trim();   // remove any unused third piece
+      String sound = HANGUL_SOUND_INITIAL[first]
+        + HANGUL_SOUND_MEDIAL[second] + HANGUL_SOUND_FINAL[third];
+      caption += " (" + sound.charAt(0) + sound.substring(1).toLowerCase()
+        + ")";                    // first "letter" may be from second piece
+    }
+    else if ((value >= 0x18800) && (value <= 0x18AFF)) // Tangut Components?
+    {
+      /* Tangut components are numbered from 001 to 768, with no other name
+      in the Unicode standard. */
+
+      caption = Integer.toString(value - 0x18800 + 1); // from one, not zero
+      caption = "Tangut Component-" + "000".substring(caption.length())
+        + caption;                // always three digits
+    }
+    else                          // not in a range with generated captions
+      caption = null;
+
+    return(caption);              // give caller our generated caption
+
+  } // end of captionMake() method
+
+
 /*
   captionPut() method
 
@@ -1381,7 +1052,7 @@ public class CharMap4
 */
   static void captionPut(int value, String text)
   {
-    captionMap.put(new Integer(value), text);
+    captionLoad.put(value, text); // not visible until loading is finished
   }
 
 
@@ -1418,6 +1089,83 @@ public class CharMap4
   }
 
 
+/*
+  loadCaption() method
+
+  Parse one line from the configuration data file as a Unicode mouse caption,
+  if possible.  This does the same as matching the regular expression:
+
+      ^\s*[Uu]\+([0-9A-Fa-f]+)\s*=\s*(.*\S)\s*$
+
+  without creating any objects except the caption string, which is added to
+  <store>.  Return true if the line is a mouse caption, or false if the caller
+  should try something else.  When the character number is out of range, an
+  error message is printed and we return true if <verbose> is true, otherwise
+  we return false without any message.
+*/
+  static boolean loadCaption(char[] buffer, int start, int end,
+    CharMap4Captions store, boolean verbose)
+  {
+    int digits;                   // number of hexadecimal digits found
+    int i;                        // index variable
+    int last;                     // index after last character of caption
+    int value;                    // character number from hex digits
+
+    i = start;                    // start from beginning of input line
+    while ((i < end) && loadSpace(buffer[i]))
+      i ++;                       // ignore leading white space
+    if (((i + 1) >= end) || ((buffer[i] != 'U') && (buffer[i] != 'u'))
+      || (buffer[i + 1] != '+'))  // must begin with "U+" or "u+"
+    {
+      return(false);
+    }
+    i += 2;                       // skip over "U+" prefix
+
+    digits = value = 0;           // no hexadecimal digits found yet
+    while (i < end)
+    {
+      int digit = (buffer[i] > 'f') ? -1 : Character.digit(buffer[i], 16);
+      if (digit < 0)              // only ASCII digits, not other Unicode
+        break;                    // not a hexadecimal digit, stop looking
+      value = Math.min(((value << 4) + digit), 0x110000); // avoid overflow
+      digits ++;                  // count number of digits
+      i ++;
+    }
+    if (digits == 0)              // was there at least one digit?
+      return(false);
+
+    while ((i < end) && loadSpace(buffer[i]))
+      i ++;                       // ignore white space before equal sign
+    if ((i >= end) || (buffer[i] != '='))
+      return(false);
+    i ++;                         // skip over equal sign
+    while ((i < end) && loadSpace(buffer[i]))
+      i ++;                       // ignore white space before caption
+    last = end;                   // caption goes to end of line
+    while ((last > i) && loadSpace(buffer[last - 1]))
+      last --;                    // ignore white space after caption
+    if (i >= last)                // caption must not be empty
+      return(false);
+    for (int k = i; k < last; k ++) // regular expression "." is not a newline
+    {
+      if ((buffer[k] == '\u0085') || (buffer[k] == '\u2028')
+        || (buffer[k] == '\u2029'))
+      {
+        return(false);
+      }
+    }
+
+    if (value <= 0x10FFFF)        // always allow full Unicode range
+      store.put(value, new String(buffer, i, (last - i))); // number is valid
+    else if (verbose)             // character number can't be Unicode
+      System.err.println("Unicode number out of range: "
+        + new String(buffer, start, (end - start)));
+    else                          // let caller print the message later
+      return(false);
+    return(true);
+  } // end of loadCaption() method
+
+
 /*
   loadConfig() method
 
@@ -1447,105 +1195,99 @@ public class CharMap4
   static void loadConfig()
   {
     byte[] array;                 // an array for exactly one byte
+    CharMap4Captions bundled;     // captions from bundle file, or <null>
     Pattern buttonPattern;        // compiled regular expression
+    ArrayList<String[]> buttons;  // word, caption, line for each button
     String caption;               // defined caption string or <null>
+    FileChannel channel;          // for reading data file in one piece
     char ch;                      // one character from input line
+    char[] chars;                 // characters from one input line
+    ByteBuffer contents;          // whole data file as bytes
     int i;                        // index variable
-    BufferedReader inputFile;     // input character stream from text file
-    int length;                   // size of a string in characters
+    FileInputStream inputFile;    // input byte stream from data file
+    ArrayList<String> lines;      // lines that aren't simple mouse captions
     Matcher matcher;              // pattern matcher for regular expression
-    Pattern mousePattern;         // compiled regular expression
+    boolean parsed;               // true if text file was parsed, not bundle
+    CharMap4Captions regular;     // regular captions, without Alt+ numbers
+    File source;                  // configuration data file (text)
+    CharMap4LoadTask task;        // parses all or part of the data file
     String text;                  // one input line from file, or otherwise
     String word;                  // first command word on input line
 
     buttonPattern = Pattern.compile("^\\s*(\\w+)\\s*=\\s*(.*\\S)\\s*$");
-    captionMap = new TreeMap();   // start without any mouse captions
-    mousePattern = Pattern.compile(
-        "^\\s*[Uu]\\+([0-9A-Fa-f]+)\\s*=\\s*(.*\\S)\\s*$");
+    buttons = new ArrayList<String[]>(); // no button captions or strings yet
+    captionLoad = new CharMap4Captions(); // start without any mouse captions
+    lines = new ArrayList<String>(); // no lines other than mouse captions yet
+    parsed = false;               // text file hasn't been parsed yet
+    source = new File(dataFile);  // the text file is what the user edits
 
-    /* Open and read lines from the configuration data file. */
+    /* Unless the text file has changed, use the binary bundle saved from the
+    last time that the text file was parsed.  See CharMap4Captions. */
 
     try                           // catch specific and general I/O errors
     {
-      inputFile = new BufferedReader(new InputStreamReader(new
-        FileInputStream(dataFile), "UTF-8")); // UTF-8 encoded text file
-      inputFile.mark(4);          // we may need to back up a few bytes
-      i = inputFile.read();       // read byte-order marker if present
-      if ((i >= 0) && (i != '\uFEFF') && (i != '\uFFFE')) // skip BOM or EOF?
-        inputFile.reset();        // no, regular text, go back to beginning
-
-      while ((text = inputFile.readLine()) != null)
+      bundled = CharMap4Captions.bundleLoad(bundleFile(), source, lines);
+      if (bundled != null)        // was the bundle file usable?
+        captionLoad = bundled;    // yes, text file doesn't need to be parsed
+      else
       {
-        /* Find the first word on the input line, which determines whether this
-        is a command or a comment. */
+        /* Read the whole configuration data file into one array.  (Mapping the
+        file would keep it locked on Windows, so that the user couldn't save
+        changes while this program is running.)  There are tens of thousands
+        of lines, almost all of them mouse captions, so the array is split
+        into pieces at line boundaries, and the pieces are parsed in parallel
+        (see CharMap4LoadTask).  Captions from all pieces are then added in
+        file order, so that later lines still replace earlier lines.  Lines
+        that aren't simple mouse captions are collected in file order and done
+        below.  The array is released as soon as the pieces are merged. */
+
+        inputFile = new FileInputStream(source); // UTF-8 encoded text file
+        try                       // always close file, even after an error
+        {
+          channel = inputFile.getChannel();
+          contents = ByteBuffer.allocate((int) channel.size());
+          while (contents.hasRemaining() && (channel.read(contents) >= 0))
+          {
+            /* Usually one read gets the whole file. */
+          }
+        }
+        finally                   // file is no longer needed or locked
+        {
+          inputFile.close();
+        }
+        task = new CharMap4LoadTask(contents.array(), 0,
+          contents.position());   // whole file for now
+        contents = null;          // only the task has the array now
+        ForkJoinPool.commonPool().invoke(task); // wait for all pieces
+        task.merge(captionLoad, lines); // captions and other lines in order
+        task = null;              // release file contents and pieces
+        parsed = true;            // save a bundle file for next time
+      }
 
-        i = 0;                    // start from beginning of input line
-        length = text.length();   // number of characters to consider
-        while ((i < length) && Character.isWhitespace(text.charAt(i)))
-          i ++;                   // ignore leading white space (blanks, tabs)
-        if ((i >= length) || (text.charAt(i) == '#')) // blank line or comment?
-          continue;               // yes, return to beginning of read loop
+      for (i = 0; i < lines.size(); i ++)
+      {
+        text = lines.get(i);      // next line in file order
+        chars = text.toCharArray(); // as expected by loadCaption()
 
-        /* The vast majority of data lines are Unicode mouse captions. */
+        /* Captions with character numbers that are too big come here, so that
+        error messages are in file order. */
 
-        if ((matcher = mousePattern.matcher(text)).matches())
+        if (loadCaption(chars, 0, chars.length, captionLoad, true))
         {
-          try { i = Integer.parseInt(matcher.group(1), 16); } // parse U+ hex
-          catch (NumberFormatException nfe) { i = -1; } // invalidate result
-          if ((i >= 0) && (i <= 0x10FFFF)) // always allow full Unicode range
-            captionPut(i, matcher.group(2)); // character number looks valid
-          else                    // character number can't be Unicode
-            System.err.println("Unicode number out of range: " + text);
+          /* Caption was saved, or an error message was printed. */
         }
 
-        /* There may be a few optional button captions or text strings. */
+        /* There may be a few optional button captions or text strings.  Our
+        buttons and menu items belong to the event thread, so we only collect
+        the captions here.  See loadFinished(). */
 
         else if ((matcher = buttonPattern.matcher(text)).matches())
         {
           word = matcher.group(1).toLowerCase(); // our button or menu name
           caption = matcher.group(2); // caller's Unicode replacement string
 
-          /* Go through a lowercase list of known buttons and menu items.  The
-          external names are a simple form of our internal program names. */
-
-          if (word.equals("aboutmenu"))
-            menuReport.setText(caption);
-          else if (word.equals("charmenu"))
-            menuChars.setText(caption);
-          else if (word.equals("clearbutton"))
-            clearButton.setText(caption);
-          else if (word.equals("clearcaption"))
-            clearButton.setToolTipText(caption);
-          else if (word.equals("copybutton"))
-            copyButton.setText(caption);
-          else if (word.equals("copycaption"))
-            copyButton.setToolTipText(caption);
-          else if (word.equals("exitmenu"))
-            menuExit.setText(caption);
-          else if(word.equals("fontcaption"))
-            nameDialog.setToolTipText(caption);
-          else if (word.equals("glyphmenu"))
-            menuGlyphs.setText(caption);
-          else if (word.equals("menubutton"))
-            menuButton.setText(caption);
-          else if (word.equals("menucaption"))
-            menuButton.setToolTipText(caption);
-          else if (word.equals("programtitle")) // maybe this should be hidden?
-            mainFrame.setTitle(caption);
-          else if (word.equals("rightcaption"))
-            rightCopyCaption.setText(caption);
-          else if (word.equals("rightglyph"))
-            rightCopyGlyph.setText(caption);
-          else if (word.equals("rightnotation"))
-            rightCopyNotation.setText(caption);
-          else if (word.equals("rightnumber"))
-            rightCopyNumber.setText(caption);
-          else if (word.equals("righttext"))
-            rightCopyText.setText(caption);
-          else if (word.equals("sizecaption"))
-            sizeDialog.setToolTipText(caption);
-          else
-            System.err.println("Unknown button or menu name: " + text);
+          buttons.add(new String[] {word, caption, text});
+                                  // set on event thread by loadFinished()
         }
 
         /* Warn the user about an invalid command line in the data file. */
@@ -1555,7 +1297,6 @@ public class CharMap4
           System.err.println("Unknown configuration command: " + text);
         }
       }
-      inputFile.close();          // try to close input file
     }
 
     catch (FileNotFoundException fnfe) // if our data file does not exist
@@ -1688,8 +1429,14 @@ public class CharMap4
     numbers for that region.  This is unavoidable because the C1 control region
     has shift codes for many double-byte character sets. */
 
+    captionLoad.finish();         // sort captions, keep last for each char
+    captionMap = regular = captionLoad; // publish regular captions
+
     if (mswinFlag)                // only if running on Microsoft Windows
     {
+      bundled = captionLoad;      // put Alt+ captions on top of the others
+      captionLoad = new CharMap4Captions();
+      captionLoad.under = bundled;
       array = new byte[1];        // test one encoded byte at a time
       for (i = 0x20; i <= 0xFF; i ++) // do all non-control 8-bit bytes
       {
@@ -1697,7 +1444,7 @@ public class CharMap4
         text = new String(array); // convert byte to Unicode, or replace char
         if ((text.length() == 1) && ((ch = text.charAt(0)) != REPLACE_CHAR))
         {
-          caption = (String) captionMap.get(new Integer((int) ch));
+          caption = captionLoad.get((int) ch);
                                   // fetch actual value, not via <captionGet>
           if (caption == null)    // but have we already created a caption?
             caption = "";         // no, use empty string, nothing to append to
@@ -1707,10 +1454,122 @@ public class CharMap4
           captionPut((int) ch, caption); // save new caption string
         }
       } // end of <for> loop
+      captionLoad.finish();       // replace old captions with new ones
     }
+    captionMap = captionLoad;     // all captions are visible at once
+    captionLoad = null;           // and nothing is still being loaded
+    captionButtons = buttons;     // before <volatile> flag, for event thread
+    captionReady = true;          // captions won't change after this point
+    SwingUtilities.invokeLater((Runnable) userActions); // loadFinished()
+
+    /* Save the regular captions in a bundle file for next time, after they
+    are already being shown, because building the dictionary for the bundle
+    takes longer than parsing the text file.  Finished captions never change,
+    so it doesn't matter that the event thread may be reading them. */
+
+    if (parsed)                   // did we parse the text file?
+      regular.bundleSave(bundleFile(), source, lines); // yes, save for next
   } // end of loadConfig() method
 
 
+/*
+  loadFinished() method
+
+  Called on the event thread after loadConfig() has published the last of the
+  mouse captions.  Set any button captions from the data file, and refresh
+  anything that was shown while captions were still being loaded: the status
+  line under the mouse and the summary in the report dialog.
+
+  Captions go from the loader thread to the event thread without locks.  Each
+  CharMap4Captions object is built privately by loadConfig(), and is never
+  changed after being stored in <captionMap> (a <volatile> reference), so that
+  captionGet() always sees one complete set of captions, old or new.
+*/
+  static void loadFinished()
+  {
+    String caption;               // caller's Unicode replacement string
+    int i;                        // index variable
+    String[] parts;               // word, caption, line for one button
+    String text;                  // complete input line from data file
+    String word;                  // our button or menu name
+
+    for (i = 0; i < captionButtons.size(); i ++)
+    {
+      parts = captionButtons.get(i); // next button in file order
+      word = parts[0];
+      caption = parts[1];
+      text = parts[2];
+
+      /* Go through a lowercase list of known buttons and menu items.  The
+      external names are a simple form of our internal program names. */
+
+      if (word.equals("aboutmenu"))
+        menuReport.setText(caption);
+      else if (word.equals("charmenu"))
+        menuChars.setText(caption);
+      else if (word.equals("clearbutton"))
+        clearButton.setText(caption);
+      else if (word.equals("clearcaption"))
+        clearButton.setToolTipText(caption);
+      else if (word.equals("copybutton"))
+        copyButton.setText(caption);
+      else if (word.equals("copycaption"))
+        copyButton.setToolTipText(caption);
+      else if (word.equals("exitmenu"))
+        menuExit.setText(caption);
+      else if(word.equals("fontcaption"))
+        nameDialog.setToolTipText(caption);
+      else if (word.equals("glyphmenu"))
+        menuGlyphs.setText(caption);
+      else if (word.equals("menubutton"))
+        menuButton.setText(caption);
+      else if (word.equals("menucaption"))
+        menuButton.setToolTipText(caption);
+      else if (word.equals("programtitle")) // maybe this should be hidden?
+        mainFrame.setTitle(caption);
+      else if (word.equals("rightcaption"))
+        rightCopyCaption.setText(caption);
+      else if (word.equals("rightglyph"))
+        rightCopyGlyph.setText(caption);
+      else if (word.equals("rightnotation"))
+        rightCopyNotation.setText(caption);
+      else if (word.equals("rightnumber"))
+        rightCopyNumber.setText(caption);
+      else if (word.equals("rightshared"))
+        rightShared.setText(caption);
+      else if (word.equals("righttext"))
+        rightCopyText.setText(caption);
+      else if (word.equals("sizecaption"))
+        sizeDialog.setToolTipText(caption);
+      else
+        System.err.println("Unknown button or menu name: " + text);
+    }
+    captionButtons = null;        // button captions are no longer needed
+
+    gridPanel.captionClear();     // saved mouse captions may be incomplete
+    if (gridPanel.hoverIndex >= 0) // is the mouse over a character?
+      statusDialog.setText(gridPanel.captionCell(gridPanel.hoverIndex));
+    if ((reportDialog != null) && reportDialog.isVisible()
+      && reportDialog.getTitle().equals(SUMMARY_TITLE))
+    {
+      reportFillSummary();        // redo summary without moving the window
+    }
+  } // end of loadFinished() method
+
+
+/*
+  loadSpace() method
+
+  Return true if a character is white space as defined for regular expressions
+  ("\s"), which is not the same as Character.isWhitespace().
+*/
+  static boolean loadSpace(char ch)
+  {
+    return((ch == ' ') || (ch == '\t') || (ch == '\n') || (ch == '\u000B')
+      || (ch == '\f') || (ch == '\r'));
+  }
+
+
 /*
   putError() method
 
@@ -1725,6 +1584,64 @@ public class CharMap4
   }
 
 
+/*
+  reportFillSummary() method
+
+  Put information about this program and the user's current sample text into
+  the report dialog, which must already exist.
+*/
+  static void reportFillSummary()
+  {
+    int ch;                       // one character from string as an integer
+    int i;                        // index variable
+    String input;                 // extracted string from sample text box
+    int length;                   // size of input string in characters
+
+    input = sampleDialog.getText(); // get characters from sample text box
+    length = input.length();      // get total number of sample characters
+    reportText.setText(PROGRAM_TITLE + "\n" + COPYRIGHT_NOTICE + "\n\n" +
+      "Current window position is (" + mainFrame.getX() + ","
+      + mainFrame.getY() + ") and size is (" + mainFrame.getWidth()
+      + "," + mainFrame.getHeight() + ") pixels.\n\nFont <" + fontName
+      + "> has " + formatComma.format(gridPanel.charCount)
+      + " characters with " + formatComma.format(gridPanel.glyphCount)
+      + " glyphs.\n");
+    if (gridPanel.scanMethod != null) // do we know how font was enumerated?
+      reportText.append("Character list came from "
+        + gridPanel.scanMethod + ".\n");
+    reportText.append(gridPanel.atlas.report() + "\n");
+    reportText.append(gridPanel.prefetch.report() + "\n");
+    reportText.append(gridPanel.scrollReport() + "\n");
+    CharMap4Captions captions = captionMap; // may change during this method
+    if (captions == null)         // have the caption strings been loaded?
+      reportText.append("Mouse captions are still being loaded.\n");
+    else
+      reportText.append(captions.report() + "\n");
+
+//  i = length;                   // number of real characters // Java 1.4
+    i = Character.codePointCount(input, 0, length); // Java 5.0
+    if (i > 1)                    // format a pretty singular/plural message
+      reportText.append("Sample text has " + formatComma.format(i)
+        + " characters:\n");
+    else if (i > 0)               // more than zero but less than two
+      reportText.append("Sample text has one character:\n");
+    else                          // less than one, hence zero
+      reportText.append("Sample text is empty.\n");
+
+    i = 0;                        // start from beginning of string
+    while (i < length)            // do all characters in the sample text
+    {
+//    ch = (int) input.charAt(i ++); // get one standard character // Java 1.4
+      ch = Character.codePointAt(input, i); // get extended char // Java 5.0
+      i += Character.charCount(ch); // increment index by one or 2 // Java 5.0
+      reportText.append(charToString(ch) + " = " + captionGet(ch) + "\n");
+    }
+
+    reportText.select(0, 0);      // force text display back to beginning
+
+  } // end of reportFillSummary() method
+
+
 /*
   reportMakeDialog() method
 
@@ -1858,47 +1775,11 @@ public class CharMap4
 */
   static void reportShowSummary()
   {
-    int ch;                       // one character from string as an integer
-    int i;                        // index variable
-    String input;                 // extracted string from sample text box
-    int length;                   // size of input string in characters
-
     reportMakeDialog();           // create the common dialog if necessary
-    reportDialog.setTitle("Characters in Sample Text"); // window title
-
-    input = sampleDialog.getText(); // get characters from sample text box
-    length = input.length();      // get total number of sample characters
-    reportText.setText(PROGRAM_TITLE + "\n" + COPYRIGHT_NOTICE + "\n\n" +
-      "Current window position is (" + mainFrame.getX() + ","
-      + mainFrame.getY() + ") and size is (" + mainFrame.getWidth()
-      + "," + mainFrame.getHeight() + ") pixels.\n\nFont <" + fontName
-      + "> has " + formatComma.format(gridPanel.charCount)
-      + " characters with " + formatComma.format(gridPanel.glyphCount)
-      + " glyphs.\n");
-
-//  i = length;                   // number of real characters // Java 1.4
-    i = Character.codePointCount(input, 0, length); // Java 5.0
-    if (i > 1)                    // format a pretty singular/plural message
-      reportText.append("Sample text has " + formatComma.format(i)
-        + " characters:\n");
-    else if (i > 0)               // more than zero but less than two
-      reportText.append("Sample text has one character:\n");
-    else                          // less than one, hence zero
-      reportText.append("Sample text is empty.\n");
-
-    i = 0;                        // start from beginning of string
-    while (i < length)            // do all characters in the sample text
-    {
-//    ch = (int) input.charAt(i ++); // get one standard character // Java 1.4
-      ch = Character.codePointAt(input, i); // get extended char // Java 5.0
-      i += Character.charCount(ch); // increment index by one or 2 // Java 5.0
-      reportText.append(charToString(ch) + " = " + captionGet(ch) + "\n");
-    }
-
-    reportText.select(0, 0);      // force text display back to beginning
+    reportDialog.setTitle(SUMMARY_TITLE); // window title
+    reportFillSummary();          // program and sample text information
     reportShowDialog();           // show the report dialog window
-
-  } // end of reportShowSummary() method
+  }
 
 
 /*
@@ -1998,6 +1879,10 @@ public class CharMap4
     System.err.println("  -c1 = -c = each mouse click replaces sample text with one character");
     System.err.println("  -d# = text file with character name data; default is -d\"" + DEFAULT_FILE + "\"");
     System.err.println("  -f# = initial font for display text; default is -f\"" + DEFAULT_FONT + "\"");
+    System.err.println("  -k# = folder for font and caption cache files; default is -k\"~" + File.separator + DEFAULT_CACHE + "\"");
+    System.err.println("      in your home folder; -k alone means don't save font or caption information");
+    System.err.println("  -p0 = find font characters from cmap table or assigned Unicode blocks (default)");
+    System.err.println("  -p1 = -p = probe every Unicode character number, including private use planes");
     System.err.println("  -s# = initial point size for display text; default is -s" + DEFAULT_SIZE);
     System.err.println("  -u# = font size for buttons, dialogs, etc; default is local system;");
     System.err.println("      example: -u16");
@@ -2107,6 +1992,12 @@ public class CharMap4
       if (rightSaveChar >= 0)
         gridPanel.mouseReplaceText(charToString(rightSaveChar));
     }
+    else if ((rightShared != null) && (source instanceof JMenuItem)
+      && rightShared.isMenuComponent((JMenuItem) source))
+    {                             // right click: one of "Shared Characters"
+      gridPanel.mouseReplaceText(charToString(Integer.parseInt(event
+        .getActionCommand())));   // action command has character number
+    }
     else if (source == sampleDialog) // pressing Enter key on sample text
     {
       copyButton.doClick();       // simulate user click on "Copy All" button
@@ -2226,728 +2117,4232 @@ public class CharMap4
 // ------------------------------------------------------------------------- //
 
 /*
-  CharMap4Grid class
-
-  This class draws the character grid and listens for mouse and scroll events.
-  Keyboard events are handled by the main class and mimic the scroll bar.
+  CharMap4Captions class
+
+  A compact store of mouse captions for character numbers, instead of a map
+  with one Integer and one String object for each of about 100,000 captions.
+  Character numbers are kept in increasing order in one array, and the caption
+  text is packed into one array of bytes.  A small index by "page" of 256
+  characters narrows the binary search to a few captions.  A String is
+  created only when a caption is asked for.
+
+  Most captions are Unihan readings or Unicode names, made from a small
+  vocabulary of words ("M:Zhong", "J:Naka", "Letter") separated by spaces.
+  In a bundle file (see below), each word that appears more than once is saved
+  only once, in a dictionary, and captions are saved as a list of word
+  numbers.  Building the dictionary takes longer than parsing the text data
+  file, so captions in memory are plain UTF-8 text, and the dictionary is
+  built only when a bundle file is written.  The most common words
+  have the smallest numbers, and numbers are written in as few bytes as
+  possible: seven bits per byte, with the high bit set when more bytes follow.
+  Numbers from the dictionary size upwards are for words that aren't in the
+  dictionary: the number minus the dictionary size is the length of the word,
+  and the UTF-8 bytes for that word follow the number.
+
+  Captions are added with put() in any order, and become visible to get() only
+  after finish() is called.  When the same character number is added more than
+  once, the last caption wins.  Captions are added and finished by only one
+  thread, and the caller must not share this object with other threads until
+  it is finished.
+
+  Finished captions can be saved in a binary "bundle" file, which is mapped
+  into memory the next time that the program runs, instead of parsing the
+  text data file again.  The encoded captions stay in the mapped file until
+  they are asked for.  A store can also be put on top of another store
+  (<under>), so that a few captions can be replaced without copying all the
+  others.
 */
 
-class CharMap4Grid extends JPanel implements ChangeListener, MouseListener,
-  MouseMotionListener, MouseWheelListener
+class CharMap4Captions
 {
   /* constants */
 
-  static final Color GRID_COLOR = Color.LIGHT_GRAY; // color of boxes, lines
-  static final int GRID_WIDTH = 2; // width of grid lines in pixels
-  static final int MOUSE_DRIFT = 10; // pixel movement allowed on mouse click
-  static final int NO_MOUSE = -1; // index when mouse not on defined character
-  static final Color PANEL_COLOR = Color.WHITE; // normal background color
-  static final int PANEL_MARGIN = 5; // outside margin of panel in pixels
-  static final Color TEXT_COLOR = Color.BLACK; // color of all display text
-  static final int TEXT_MARGIN = 4; // margin inside cell for each character
+  static final int BUNDLE_MAGIC = 0x434D3443; // "CM4C" at start of bundle
+  static final int BUNDLE_VERSION = 2; // increment if bundle format changes
+  static final int PAGE_SHIFT = 8; // 256 character numbers per index page
+  static final int START_SIZE = 1024; // starting size of arrays for put()
+  static final int WORD_MINIMUM = 2; // times a word appears to be dictionary
 
   /* instance variables */
 
-  int clickIndex;                 // cell index of clicked character
-  int clickStartX, clickStartY;   // starting pixel coordinates of mouse click
-  int cornerIndex;                // cell index of top-left corner
-  FontMetrics fontData;           // information about current display font
-  int horizStep;                  // horizontal offset from one cell to next
-  int hoverIndex;                 // cell index of mouse over character
-  int lineAscent;                 // number of pixels above baseline
-  int lineHeight;                 // height of each display line in pixels
-  int maxWidth;                   // maximum pixel width of all characters
-  int panelColumns;               // number of complete text columns displayed
-  int panelCount;                 // saved value of <cellCount> used previously
-  Font panelFont;                 // saved font for drawing text on this panel
-  int panelHeight, panelWidth;    // saved panel height and width in pixels
-  int panelRows;                  // number of complete lines (rows) displayed
-  int vertiStep;                  // vertical offset from one cell to next
-
-  /* To switch between displaying characters and displaying raw glyphs, we
-  create identical information structures for both, and switch only object
-  references.  A "cell" is our generic name for either one or the other. */
+  int[] codes;                    // character numbers in increasing order
+  int count;                      // number of captions that can be found
+  byte[] data;                    // all captions as plain text or words
+  boolean encoded;                // true if captions are encoded word numbers
+  ByteBuffer mapped;              // encoded captions in a bundle, or <null>
+  int[] pages;                    // first caption index for each page
+  int[] starts;                   // where each caption starts in <data>
+  CharMap4Captions under;         // captions that we don't replace, or <null>
+  int[] wordStarts;               // where each word starts in <words>
+  byte[] words;                   // dictionary words, only if <encoded>
+
+  int[] newCodes;                 // character numbers added by put()
+  int newCount;                   // number of captions added by put()
+  byte[] newData;                 // caption text added by put()
+  int newSize;                    // number of bytes used in <newData>
+  int[] newStarts;                // where each caption starts in <newData>
 
-  int[] cellChar;                 // unique character number, or -1
-  int cellCount;                  // number of displayed characters or glyphs
-  int[] cellGlyph;                // unique glyph number, or -1
+  /* constructor */
 
-  int[] charChar;                 // as above, but for Unicode characters
-  int charCount;
-  int[] charGlyph;
+  public CharMap4Captions()
+  {
+    codes = new int[0];           // no captions can be found yet
+    count = 0;
+    data = new byte[0];
+    encoded = false;              // caption text is plain UTF-8
+    mapped = null;                // caption text is in <data>
+    pages = null;                 // no index until there are captions
+    starts = new int[1];          // end of (no) last caption is zero
+    under = null;                 // no captions underneath ours
+    wordStarts = new int[1];      // empty dictionary
+    words = new byte[0];
+
+    newCodes = newStarts = null;  // no captions have been added yet
+    newCount = newSize = 0;
+    newData = null;
+  }
 
-  int[] glyphChar;                // as above, but for raw glyph numbers
-  int glyphCount;
-  int[] glyphGlyph;
 
-  /* class constructor */
+/*
+  ascending() method
 
-  public CharMap4Grid()
+  Return true if a list of starting positions begins at zero, never goes
+  backwards, and finishes at <end>.
+*/
+  static boolean ascending(int[] list, int end)
   {
-    super();                      // initialize our superclass first (JPanel)
+    if (list[0] != 0)             // first entry must start at zero
+      return(false);
+    for (int i = 1; i < list.length; i ++) // never go backwards
+      if (list[i] < list[i - 1])
+        return(false);
+    return(list[list.length - 1] == end); // and end at the end
+  }
 
-    /* Set class instance variables to undefined values that we will recognize
-    if we are called before the layout and first "paint" is complete. */
 
-    cellCount = charCount = glyphCount = 0; // no chars or glyphs to display
-    clickIndex = NO_MOUSE;        // cell index of clicked character
-    clickStartX = clickStartY = NO_MOUSE; // no starting coordinates for click
-    cornerIndex = 0;              // cell index of top-left corner
-    fontData = null;              // information about current display font
-    horizStep = 100;              // horizontal offset from one cell to next
-    hoverIndex = NO_MOUSE;        // cell index of mouse over character
-    lineAscent = 100;             // number of pixels above baseline
-    lineHeight = 100;             // height of each display line in pixels
-    maxWidth = 100;               // maximum pixel width of all characters
-    panelColumns = 10;            // number of complete text columns displayed
-    panelCount = -1;              // saved value of <cellCount> used previously
-    panelFont = null;             // saved font for drawing text on this panel
-    panelHeight = panelWidth = -1; // saved panel height and width in pixels
-    panelRows = 10;               // number of complete lines (rows) displayed
-    vertiStep = 100;              // vertical offset from one cell to next
+/*
+  bundleLoad() and bundleSave() methods
+
+  A bundle file has the finished captions from one text data file, and the
+  lines from that file that aren't simple mouse captions (such as button
+  names), in file order.  A bundle is only believed if the name, size, and
+  date of the text file are unchanged, so editing the text file causes a new
+  bundle to be saved.  The bundle isn't compressed, so that it can be mapped
+  into memory.  Any problem with a bundle is treated as if the file didn't
+  exist; the text file is simply parsed again.  This includes counts that are
+  bigger than the file, and an index that isn't in order, since a damaged
+  bundle must not cause errors later when captions are shown.
+*/
+  static CharMap4Captions bundleLoad(File file, File source,
+    ArrayList<String> lines)
+  {
+    FileChannel channel;          // for mapping bundle file into memory
+    FileInputStream input;        // input byte stream from bundle file
+    ArrayList<String> found;      // lines found in bundle file
+    ByteBuffer map;               // whole bundle file mapped into memory
+    CharMap4Captions result;      // captions from bundle file, or <null>
 
-    /* Install our mouse and scroll listeners. */
+    if ((file == null) || (file.exists() == false))
+      return(null);               // no bundle, or bundle not saved yet
 
-    this.addMouseListener((MouseListener) this);
-    this.addMouseMotionListener((MouseMotionListener) this);
-    this.addMouseWheelListener((MouseWheelListener) this);
-//  this.setFocusable(false);     // we don't handle keyboard input, owner does
+    input = null;                 // file isn't open yet
+    result = null;                // assume that bundle file is unusable
+    try                           // catch specific and general I/O errors
+    {
+      try                         // always close file, even if map() fails
+      {
+        input = new FileInputStream(file);
+        channel = input.getChannel();
+        map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+      finally                     // mapping stays valid after file is closed
+      {
+        if (input != null)
+          input.close();
+      }
+
+      if ((map.getInt() == BUNDLE_MAGIC)
+        && (map.getInt() == BUNDLE_VERSION)
+        && bundleString(map).equals(source.getAbsolutePath())
+        && (map.getLong() == source.length())
+        && (map.getLong() == source.lastModified()))
+      {
+        found = new ArrayList<String>(); // lines that aren't mouse captions
+        int lineCount = map.getInt();
+        if ((lineCount < 0) || (lineCount > (map.remaining() / 4)))
+          throw new IOException("bad line count"); // more than file has
+        for (int i = 0; i < lineCount; i ++)
+          found.add(bundleString(map));
+        result = new CharMap4Captions(); // the index is copied into arrays
+        result.count = map.getInt();
+        int size = map.getInt();  // number of bytes in all encoded captions
+        int wordCount = map.getInt(); // number of words in dictionary
+        int wordSize = map.getInt(); // number of bytes in dictionary words
+        if ((result.count < 0) || (size < 0) || (wordCount < 0)
+          || (wordSize < 0) || (map.remaining() != ((4L * ((2L
+          * result.count) + wordCount + 2)) + wordSize + size)))
+        {
+          throw new IOException("wrong size"); // truncated or changed
+        }
+        result.codes = new int[result.count];
+        result.starts = new int[result.count + 1];
+        result.wordStarts = new int[wordCount + 1];
+        result.words = new byte[wordSize];
+        IntBuffer numbers = map.asIntBuffer(); // starts at current position
+        numbers.get(result.codes);
+        numbers.get(result.starts);
+        numbers.get(result.wordStarts);
+        map.position(map.position() + (4 * ((2 * result.count) + wordCount
+          + 2)));
+        map.get(result.words);    // dictionary is small, and used often
+
+        /* Character numbers must be in range and strictly increasing, and
+        captions and words must start in order from zero to their ends, or
+        get() would fail long after the bundle was loaded. */
+
+        for (int i = 0; i < result.count; i ++)
+        {
+          if ((result.codes[i] < 0)
+            || (result.codes[i] > CharMap4.MAX_UNICODE)
+            || ((i > 0) && (result.codes[i] <= result.codes[i - 1])))
+          {
+            throw new IOException("bad character number");
+          }
+        }
+        if ((ascending(result.starts, size) == false)
+          || (ascending(result.wordStarts, wordSize) == false))
+        {
+          throw new IOException("bad index"); // out of order or range
+        }
+        result.data = null;       // encoded captions stay in the mapped file
+        result.encoded = true;
+        result.mapped = map.slice();
+        result.pageBuild();       // index by page is quick to rebuild
+        lines.addAll(found);      // bundle is good, give lines to caller
+      }
+    }
+    catch (IOException ioe)       // includes any problem mapping the file
+    {
+      result = null;              // partial data is no data
+    }
+    catch (RuntimeException re)   // buffer underflow, negative sizes, etc
+    {
+      result = null;
+    }
+    return(result);               // tell caller if we were successful
+  } // end of bundleLoad() method
+
+  void bundleSave(File file, File source, ArrayList<String> lines)
+  {
+    DataOutputStream output;      // binary output stream to bundle file
+    CharMap4Captions saved;       // our captions with a dictionary
+    File temp;                    // temporary file while writing
+
+    if (file == null)             // has user disabled the cache folder?
+      return;                     // yes, there is nothing to save
+    saved = encode();             // bundle always has a dictionary
+
+    /* Write into a temporary file, then rename, so that another copy of this
+    program never sees a partial bundle file. */
+
+    temp = new File(file.getPath() + ".tmp");
+    try                           // catch specific and general I/O errors
+    {
+      file.getParentFile().mkdirs(); // create cache folder if necessary
+      output = new DataOutputStream(new BufferedOutputStream(new
+        FileOutputStream(temp)));
+      output.writeInt(BUNDLE_MAGIC);
+      output.writeInt(BUNDLE_VERSION);
+      bundleString(output, source.getAbsolutePath());
+      output.writeLong(source.length());
+      output.writeLong(source.lastModified());
+
+      output.writeInt(lines.size());
+      for (int i = 0; i < lines.size(); i ++)
+        bundleString(output, lines.get(i));
+
+      output.writeInt(saved.count);
+      output.writeInt(saved.starts[saved.count]); // bytes in encoded captions
+      output.writeInt(saved.wordStarts.length - 1); // dictionary words
+      output.writeInt(saved.words.length);
+      for (int i = 0; i < saved.count; i ++)
+        output.writeInt(saved.codes[i]);
+      for (int i = 0; i <= saved.count; i ++)
+        output.writeInt(saved.starts[i]);
+      for (int i = 0; i < saved.wordStarts.length; i ++)
+        output.writeInt(saved.wordStarts[i]);
+      output.write(saved.words);
+      byte[] buffer = new byte[8192]; // copy encoded captions in pieces
+      for (int i = 0; i < saved.starts[saved.count]; i += buffer.length)
+      {
+        int length = Math.min(buffer.length, (saved.starts[saved.count] - i));
+        saved.copyText(i, buffer, 0, length);
+        output.write(buffer, 0, length);
+      }
+      output.close();             // try to close output file
+
+      file.delete();              // some systems won't rename over a file
+      if (temp.renameTo(file) == false)
+        temp.delete();            // bundle may be mapped by another copy
+    }
+    catch (IOException ioe)       // all file I/O errors
+    {
+      System.err.println("Unable to write caption bundle file " + file);
+      System.err.println(ioe.getMessage());
+      temp.delete();              // don't leave junk behind
+    }
+  } // end of bundleSave() method
+
+
+/*
+  bundleString() methods
+
+  Strings in a bundle are saved as a byte count followed by UTF-8 bytes.
+  (DataOutputStream.writeUTF() is limited to 65,535 bytes, and bad lines in
+  the text data file can be longer.)
+*/
+  static String bundleString(ByteBuffer map)
+  {
+    int length = map.getInt();    // number of UTF-8 bytes
+    if ((length < 0) || (length > map.remaining())) // more than file has?
+      throw new BufferUnderflowException(); // caught by bundleLoad()
+    byte[] bytes = new byte[length];
+    map.get(bytes);
+    return(new String(bytes, StandardCharsets.UTF_8));
+  }
+
+  static void bundleString(DataOutputStream output, String text)
+    throws IOException
+  {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+
+/*
+  copyText() method
+
+  Copy bytes of finished captions (plain or encoded), starting at <from>,
+  whether they are in memory or in a mapped bundle file.
+*/
+  void copyText(int from, byte[] target, int offset, int length)
+  {
+    if (mapped == null)           // is caption text in memory?
+      System.arraycopy(data, from, target, offset, length);
+    else for (int i = 0; i < length; i ++) // absolute get() is thread-safe
+      target[offset + i] = mapped.get(from + i);
+  }
+
+
+/*
+  encode() method
+
+  Return a copy of our finished captions with a dictionary of words, for
+  saving in a bundle file.  The words in all captions are counted, and those
+  that appear at least twice become the dictionary.  This is slower than
+  parsing the text data file, and is done after the captions are published.
+*/
+  CharMap4Captions encode()
+  {
+    if (encoded)                  // do we already have a dictionary?
+      return(this);               // yes, nothing more to do
+
+    CharMap4Captions result = new CharMap4Captions();
+    result.codes = codes;         // same characters, never changed
+    result.count = count;
+    result.encoded = true;
+    byte[] text = data;           // UTF-8 text for all captions
+
+    /* Count how many times each word appears.  Words are split at spaces,
+    which are the same byte in UTF-8, and are found in an open-addressed hash
+    table by comparing bytes in <text>, so that no object is created for each
+    word.  The table holds word numbers plus one (zero for an empty slot) and
+    is never more than half full.  An empty caption has no words. */
+
+    int[] table = new int[START_SIZE * 16]; // size is always a power of two
+    int names = 0;                // number of different words found
+    int[] wordFrom = new int[START_SIZE]; // where word was first found
+    int[] wordHash = new int[START_SIZE]; // hash code for each word
+    int[] wordLength = new int[START_SIZE]; // number of bytes in each word
+    int[] wordTimes = new int[START_SIZE]; // how often each word appears
+    int[] uses = new int[START_SIZE * 8]; // word for each word in each caption
+    int useCount = 0;             // number of entries in <uses>
+    for (int i = 0; i < count; i ++)
+    {
+      int end = starts[i + 1];    // where this caption ends
+      int start = starts[i];      // where the current word starts
+      for (int j = start; (end > starts[i]) && (j <= end); j ++)
+      {
+        if ((j < end) && (text[j] != ' '))
+          continue;               // not yet at the end of this word
+        int hash = 0;             // hash code from bytes of the word
+        for (int k = start; k < j; k ++)
+          hash = (31 * hash) + text[k];
+        hash ^= hash >>> 16;      // spread high bits into the table index
+        int slot = hash & (table.length - 1); // first slot to look at
+        int word;                 // word number, or -1 if not found
+        while (((word = table[slot] - 1) >= 0) && ((wordHash[word] != hash)
+          || (wordLength[word] != (j - start)) || (sameBytes(text,
+          wordFrom[word], start, (j - start)) == false)))
+        {
+          slot = (slot + 1) & (table.length - 1); // try the next slot
+        }
+        if (word < 0)             // is this the first time for this word?
+        {
+          if (names >= wordFrom.length) // are the word arrays full?
+          {
+            wordFrom = Arrays.copyOf(wordFrom, (names * 2));
+            wordHash = Arrays.copyOf(wordHash, (names * 2));
+            wordLength = Arrays.copyOf(wordLength, (names * 2));
+            wordTimes = Arrays.copyOf(wordTimes, (names * 2));
+          }
+          word = names ++;        // next word number, in order found
+          wordFrom[word] = start;
+          wordHash[word] = hash;
+          wordLength[word] = j - start;
+          wordTimes[word] = 0;
+          table[slot] = word + 1;
+          if ((names * 2) > table.length) // is the table now half full?
+          {
+            table = new int[table.length * 2]; // yes, put words in again
+            for (int k = 0; k < names; k ++)
+            {
+              slot = wordHash[k] & (table.length - 1);
+              while (table[slot] != 0)
+                slot = (slot + 1) & (table.length - 1);
+              table[slot] = k + 1;
+            }
+          }
+        }
+        wordTimes[word] ++;       // count one more time
+        if (useCount >= uses.length) // so encoding doesn't need to look again
+          uses = Arrays.copyOf(uses, (uses.length * 2));
+        uses[useCount ++] = word;
+        start = j + 1;            // next word starts after the space
+      }
+    }
+    table = null;                 // release memory used by hash table
+
+    /* Number the dictionary words, most common first.  Words that appear the
+    same number of times are in the order first found, so that numbers don't
+    depend on the order of the hash table.  The number for each word replaces
+    its count, and is -1 for words that aren't in the dictionary. */
+
+    long[] rank = new long[names]; // high: fewer times, low: word number
+    int wordCount = 0;            // number of words in dictionary
+    int wordSize = 0;             // number of bytes in dictionary words
+    for (int i = 0; i < names; i ++)
+    {
+      int times = wordTimes[i];   // how often word appears
+      wordTimes[i] = -1;          // assume not in dictionary
+      if (times >= WORD_MINIMUM)  // often enough to go into dictionary?
+      {
+        rank[wordCount ++] = (((long) (Integer.MAX_VALUE - times)) << 32) | i;
+        wordSize += wordLength[i];
+      }
+    }
+    Arrays.sort(rank, 0, wordCount); // most common words first
+
+    result.wordStarts = new int[wordCount + 1];
+    result.words = new byte[wordSize];
+    wordSize = 0;                 // now where the next word goes
+    for (int i = 0; i < wordCount; i ++)
+    {
+      int word = (int) rank[i];   // word number in order found
+      wordTimes[word] = i;        // give word its dictionary number
+      result.wordStarts[i] = wordSize;
+      System.arraycopy(text, wordFrom[word], result.words, wordSize,
+        wordLength[word]);        // same UTF-8 bytes that we started with
+      wordSize += wordLength[word];
+    }
+    result.wordStarts[wordCount] = wordSize;
+
+    /* Encode the captions into new arrays.  An encoded word is never more
+    than five bytes for the number plus the bytes of the word. */
+
+    byte[] finalData = new byte[Math.max(START_SIZE, (data.length / 2))];
+    result.starts = new int[count + 1];
+    int size = 0;                 // number of bytes used in <finalData>
+    int used = 0;                 // index of next word in <uses>
+    for (int i = 0; i < count; i ++)
+    {
+      int end = starts[i + 1];    // where this caption ends
+      int start = starts[i];      // where the current word starts
+      result.starts[i] = size;
+      for (int j = start; (end > starts[i]) && (j <= end); j ++)
+      {
+        if ((j < end) && (text[j] != ' '))
+          continue;               // not yet at the end of this word
+        if ((size + 5 + (j - start)) > finalData.length) // is there room?
+          finalData = Arrays.copyOf(finalData, Math.max((finalData.length
+            * 2), (size + 5 + (j - start))));
+        int number = wordTimes[uses[used ++]]; // dictionary word, or -1
+        if (number < 0)           // put word bytes after its length
+        {
+          size = putNumber(finalData, size, (wordCount + j - start));
+          System.arraycopy(text, start, finalData, size, (j - start));
+          size += j - start;
+        }
+        else                      // word is in the dictionary
+          size = putNumber(finalData, size, number);
+        start = j + 1;            // next word starts after the space
+      }
+    }
+    result.starts[count] = size;  // end of last caption
+
+    result.data = Arrays.copyOf(finalData, size); // trim unused space
+    result.pages = pages;         // same index, never changed
+    return(result);
+  } // end of encode() method
+
+
+/*
+  finish() method
+
+  Merge the captions added by put() with any that we already have, keeping
+  the last caption for each character number, and rebuild the index.
+  Captions that were already finished are decoded if they came from a bundle
+  file, and all captions are kept as plain text.
+*/
+  void finish()
+  {
+    if (newCount == 0)            // were any captions added?
+      return;                     // no, nothing has changed
+
+    /* Sort by character number, then by the order in which captions were
+    added.  Older captions come before newer captions. */
+
+    int total = count + newCount; // all captions, including duplicates
+    long[] order = new long[total];
+    for (int i = 0; i < count; i ++)
+      order[i] = (((long) codes[i]) << 32) | i;
+    for (int i = 0; i < newCount; i ++)
+      order[count + i] = (((long) newCodes[i]) << 32) | (count + i);
+    Arrays.sort(order);           // character numbers are never negative
+
+    /* Keep only the last of each run with the same character number, and copy
+    the plain UTF-8 text for each caption that we keep into new arrays. */
+
+    int kept = 0;                 // number of captions that we keep
+    int[] finalCodes = new int[total];
+    byte[] finalData = new byte[newSize + ((count > 0) ? starts[count] : 0)];
+    int[] finalStarts = new int[total + 1];
+    int size = 0;                 // number of bytes used in <finalData>
+    for (int i = 0; i < total; i ++)
+    {
+      if (((i + 1) < total) && ((order[i] >>> 32) == (order[i + 1] >>> 32)))
+        continue;                 // a newer caption replaces this one
+      int which = (int) order[i]; // old caption index, or count + new index
+      byte[] text;                // plain text for an old caption
+      int from, length;           // where caption is, and number of bytes
+      if (which < count)          // was this caption already finished?
+      {
+        text = textBytes(which);  // decode if necessary
+        from = 0;
+        length = text.length;
+      }
+      else                        // no, caption was added by put()
+      {
+        text = newData;
+        from = newStarts[which - count];
+        length = newStarts[which - count + 1] - from;
+      }
+      if ((size + length) > finalData.length) // decoding may be longer
+        finalData = Arrays.copyOf(finalData, Math.max((finalData.length * 2),
+          (size + length)));
+      System.arraycopy(text, from, finalData, size, length);
+      finalCodes[kept] = (int) (order[i] >>> 32);
+      finalStarts[kept ++] = size;
+      size += length;
+    }
+    finalStarts[kept] = size;     // end of last caption
+
+    codes = Arrays.copyOf(finalCodes, kept); // replace old captions
+    count = kept;
+    data = Arrays.copyOf(finalData, size); // trim unused space
+    encoded = false;              // all captions are now plain text
+    mapped = null;                // and are in memory
+    starts = Arrays.copyOf(finalStarts, (kept + 1));
+    wordStarts = new int[1];      // no dictionary
+    words = new byte[0];
+    pageBuild();                  // rebuild the index by page
+
+    newCodes = newStarts = null;  // nothing added since we finished
+    newCount = newSize = 0;
+    newData = null;
+  } // end of finish() method
+
+
+/*
+  get() method
+
+  Return the caption for a character number, or <null> if there is no
+  caption.  Only captions from before the last call to finish() are found.
+  If we don't have a caption, ask the store underneath us, if any.
+*/
+  String get(int value)
+  {
+    if ((pages == null) || (value < 0) || (value > CharMap4.MAX_UNICODE))
+      return((under == null) ? null : under.get(value)); // no captions here
+
+    int high = pages[(value >>> PAGE_SHIFT) + 1] - 1; // last caption on page
+    int low = pages[value >>> PAGE_SHIFT]; // first caption on page
+    while (low <= high)           // until there are no captions left
+    {
+      int middle = (low + high) >>> 1; // split remaining captions in half
+      int code = codes[middle];
+      if (value < code)
+        high = middle - 1;        // look at earlier captions
+      else if (value > code)
+        low = middle + 1;         // look at later captions
+      else                        // found, decode only when asked
+        return(new String(textBytes(middle), StandardCharsets.UTF_8));
+    }
+    return((under == null) ? null : under.get(value)); // not found here
+  } // end of get() method
+
+
+/*
+  pageBuild() method
+
+  Build the index by page for finished captions.  Captions for page <p> are
+  from <pages[p]> up to but not including <pages[p + 1]>.
+*/
+  void pageBuild()
+  {
+    int pageCount = (CharMap4.MAX_UNICODE >>> PAGE_SHIFT) + 1;
+    pages = new int[pageCount + 1];
+    int next = 0;                 // index of next caption to look at
+    for (int page = 0; page <= pageCount; page ++)
+    {
+      while ((next < count) && ((codes[next] >>> PAGE_SHIFT) < page))
+        next ++;                  // skip captions on earlier pages
+      pages[page] = next;
+    }
+  }
+
+
+/*
+  put() method
+
+  Add a caption for a character number.  It won't be found by get() until
+  finish() is called.
+*/
+  void put(int value, String text)
+  {
+    int length = text.length();   // number of Java characters in caption
+    if (newCodes == null)         // first caption since we finished?
+    {
+      newCodes = new int[START_SIZE];
+      newData = new byte[START_SIZE * 32];
+      newStarts = new int[START_SIZE + 1];
+    }
+    else if (newCount >= newCodes.length) // are the arrays full?
+    {
+      newCodes = Arrays.copyOf(newCodes, (newCodes.length * 2));
+      newStarts = Arrays.copyOf(newStarts, (newStarts.length * 2));
+    }
+    if ((newSize + (length * 3)) > newData.length) // worst case for UTF-8
+    {
+      newData = Arrays.copyOf(newData, Math.max((newData.length * 2),
+        (newSize + (length * 3))));
+    }
+
+    /* Plain ASCII is copied one byte per character.  Anything else is left to
+    the standard encoder. */
+
+    int i = 0;                    // index of character in caption
+    while ((i < length) && (text.charAt(i) < 0x80))
+    {
+      newData[newSize + i] = (byte) text.charAt(i);
+      i ++;
+    }
+    if (i < length)               // was there anything that wasn't ASCII?
+    {
+      byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+      System.arraycopy(encoded, 0, newData, newSize, encoded.length);
+      i = encoded.length;         // number of bytes, not characters
+    }
+    newCodes[newCount] = value;
+    newStarts[newCount] = newSize;
+    newSize += i;                 // number of bytes added
+    newCount ++;
+    newStarts[newCount] = newSize; // end of this caption
+  } // end of put() method
+
+
+/*
+  putAll() method
+
+  Add all captions that were added to another store by put(), in the same
+  order, as if we had been given them by put().
+*/
+  void putAll(CharMap4Captions other)
+  {
+    if (other.newCount == 0)      // were any captions added to the other?
+      return;                     // no, nothing to do
+    if (newCodes == null)         // first captions since we finished?
+    {
+      newCodes = new int[Math.max(START_SIZE, other.newCount)];
+      newData = new byte[Math.max((START_SIZE * 32), other.newSize)];
+      newStarts = new int[newCodes.length + 1];
+    }
+    if ((newCount + other.newCount) >= newCodes.length) // arrays too small?
+    {
+      int grow = Math.max((newCodes.length * 2), (newCount + other.newCount));
+      newCodes = Arrays.copyOf(newCodes, grow);
+      newStarts = Arrays.copyOf(newStarts, (grow + 1));
+    }
+    if ((newSize + other.newSize) > newData.length)
+    {
+      newData = Arrays.copyOf(newData, Math.max((newData.length * 2),
+        (newSize + other.newSize)));
+    }
+    System.arraycopy(other.newCodes, 0, newCodes, newCount, other.newCount);
+    System.arraycopy(other.newData, 0, newData, newSize, other.newSize);
+    for (int i = 1; i <= other.newCount; i ++) // shift start of each caption
+      newStarts[newCount + i] = newSize + other.newStarts[i];
+    newCount += other.newCount;
+    newSize += other.newSize;
+  } // end of putAll() method
+
+
+/*
+  putNumber() method
+
+  Write a non-negative number for an encoded caption, seven bits at a time,
+  lowest bits first.  The high bit is set on all bytes except the last.  The
+  caller makes sure that there is room for five bytes at <size>.  Return the
+  new size.
+*/
+  static int putNumber(byte[] output, int size, int number)
+  {
+    while (number >= 0x80)        // more than seven bits left?
+    {
+      output[size ++] = (byte) ((number & 0x7F) | 0x80); // more bytes follow
+      number >>>= 7;
+    }
+    output[size ++] = (byte) number; // last (or only) byte
+    return(size);
+  }
+
+
+/*
+  report() method
+
+  Return a summary of how many captions we have and how much memory they use.
+*/
+  String report()
+  {
+    if (under != null)            // do we replace some captions underneath?
+      return(under.report() + "  " + CharMap4.formatComma.format(count)
+        + " captions were changed.");
+    long bytes = (4L * codes.length) + ((data == null) ? 0 : data.length)
+      + (4L * starts.length) + ((pages == null) ? 0 : (4L * pages.length))
+      + (4L * wordStarts.length) + words.length;
+    return("Mouse captions for " + CharMap4.formatComma.format(count)
+      + " characters " + (encoded ? ("with a dictionary of "
+      + CharMap4.formatComma.format(wordStarts.length - 1) + " words")
+      : "as plain text") + " use " + CharMap4.formatComma.format(bytes)
+      + " bytes" + ((mapped == null) ? "." : (", plus "
+      + CharMap4.formatComma.format(mapped.capacity())
+      + " bytes mapped from a bundle file.")));
+  }
+
+
+/*
+  sameBytes() method
+
+  Return true if two byte ranges of the same length in one array are equal.
+*/
+  static boolean sameBytes(byte[] array, int first, int second, int length)
+  {
+    for (int i = 0; i < length; i ++)
+      if (array[first + i] != array[second + i])
+        return(false);
+    return(true);
+  }
+
+
+/*
+  textBytes() method
+
+  Decode one finished caption, by index, into UTF-8 bytes.  Words are joined
+  with single spaces.  This is called by any thread, so nothing is shared.
+*/
+  byte[] textBytes(int index)
+  {
+    int end = starts[index + 1];  // where the next caption starts
+    int position = starts[index]; // where this caption starts
+
+    if (encoded == false)         // is caption already plain text?
+    {
+      byte[] result = new byte[end - position];
+      copyText(position, result, 0, result.length);
+      return(result);
+    }
+
+    byte[] result = new byte[64]; // grows as needed
+    int size = 0;                 // number of bytes in <result>
+    boolean space = false;        // true after the first word
+    int wordCount = wordStarts.length - 1; // number of dictionary words
+
+    while (position < end)        // for each encoded word
+    {
+      int number = 0;             // dictionary word, or length after dictionary
+      int shift = 0;              // seven bits at a time, lowest bits first
+      int value;                  // one encoded byte
+      do
+      {
+        value = (mapped == null) ? data[position ++]
+          : mapped.get(position ++); // absolute get() is thread-safe
+        number |= (value & 0x7F) << shift;
+        shift += 7;
+      } while ((value & 0x80) != 0);
+
+      int length = (number < wordCount) ? (wordStarts[number + 1]
+        - wordStarts[number]) : (number - wordCount);
+      if ((size + length + 1) > result.length) // room for space and word?
+        result = Arrays.copyOf(result, Math.max((result.length * 2),
+          (size + length + 1)));
+      if (space)                  // is there a word before this one?
+        result[size ++] = ' ';    // yes, put a space between words
+      space = true;               // and before all words after this one
+      if (number < wordCount)     // is this a dictionary word?
+        System.arraycopy(words, wordStarts[number], result, size, length);
+      else                        // no, word bytes follow the length
+      {
+        copyText(position, result, size, length);
+        position += length;
+      }
+      size += length;
+    }
+    return(Arrays.copyOf(result, size));
+  } // end of textBytes() method
+
+} // end of CharMap4Captions class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  CharMap4LoadTask class
+
+  One piece of the configuration data file, for bytes from <begin> up to but
+  not including <end> in the file contents.  Large pieces are split in half at a
+  line boundary until they are small enough to be done directly.  Each piece
+  decodes its own bytes as UTF-8, keeps its own mouse captions, and keeps a
+  list of lines that it doesn't understand, for the caller to handle later.
+  Line boundaries are safe places to split, because newlines and carriage
+  returns are never part of a longer UTF-8 sequence.
+*/
+
+class CharMap4LoadTask extends RecursiveAction
+{
+  /* constants */
+
+  static final int CHUNK_SIZE = 0x40000; // bytes parsed without split
+  static final long serialVersionUID = 1L; // RecursiveAction is Serializable
+
+  /* instance variables */
+
+  int begin, end;                 // range of bytes in <data>
+  byte[] data;                    // whole data file, shared by all pieces
+  CharMap4LoadTask first, second; // two halves, if this piece was split
+  ArrayList<String> others;       // lines that aren't simple mouse captions
+  CharMap4Captions store;         // mouse captions found in this piece
+
+  /* constructor */
+
+  public CharMap4LoadTask(byte[] data, int begin, int end)
+  {
+    this.begin = begin;
+    this.data = data;
+    this.end = end;
+    this.first = this.second = null; // not split yet
+    this.others = null;           // created only if piece is done directly
+    this.store = null;
+  }
+
+  /* compute() method: called by the fork-join pool */
+
+  protected void compute()
+  {
+    if ((end - begin) > CHUNK_SIZE) // is this piece too big to do directly?
+    {
+      int middle = begin + ((end - begin) / 2); // split near the middle
+      while ((middle < end) && (data[middle - 1] != '\n')
+        && (data[middle - 1] != '\r'))
+      {
+        middle ++;                // move split to the start of a line
+      }
+      if (middle < end)           // was there a line boundary?
+      {
+        first = new CharMap4LoadTask(data, begin, middle);
+        second = new CharMap4LoadTask(data, middle, end);
+        invokeAll(first, second); // run both halves, maybe in parallel
+        return;
+      }
+    }
+
+    /* Decode our bytes as UTF-8, replacing bad bytes like a Reader would. */
+
+    CharBuffer decoded;           // our bytes as Java characters
+    ByteBuffer piece = ByteBuffer.wrap(data, begin, (end - begin));
+    others = new ArrayList<String>(); // no unknown lines yet
+    store = new CharMap4Captions(); // no mouse captions yet
+    try
+    {
+      decoded = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE).decode(piece);
+    }
+    catch (CharacterCodingException cce) // shouldn't happen with REPLACE
+    {
+      System.err.println("Unable to decode configuration data file: "
+        + cce.getMessage());
+      return;                     // this piece has nothing
+    }
+    char[] buffer = decoded.array(); // decoder's buffer is always an array
+    int start = decoded.arrayOffset() + decoded.position();
+    int stop = decoded.arrayOffset() + decoded.limit();
+    if ((begin == 0) && (start < stop) && ((buffer[start] == '\uFEFF')
+      || (buffer[start] == '\uFFFE'))) // byte-order marker at start of file?
+    {
+      start ++;                   // yes, skip the byte-order marker
+    }
+
+    /* Carriage returns and line feeds both end a line, which makes CR-LF look
+    like an extra blank line, and blank lines are ignored anyway.  Only the
+    caption strings become String objects. */
+
+    while (start < stop)
+    {
+      int lineStart = start;      // first character of this line
+      int lineEnd = start;        // look for newline character or end
+      while ((lineEnd < stop) && (buffer[lineEnd] != '\n')
+        && (buffer[lineEnd] != '\r'))
+      {
+        lineEnd ++;
+      }
+      start = lineEnd + 1;        // next line starts after the newline
+
+      int i = lineStart;          // find first word on input line
+      while ((i < lineEnd) && Character.isWhitespace(buffer[i]))
+        i ++;                     // ignore leading white space (blanks, tabs)
+      if ((i >= lineEnd) || (buffer[i] == '#')) // blank line or comment?
+        continue;                 // yes, go on to next line
+
+      if (CharMap4.loadCaption(buffer, lineStart, lineEnd, store, false)
+        == false)                 // not a simple mouse caption?
+      {
+        others.add(new String(buffer, lineStart, (lineEnd - lineStart)));
+      }
+    }
+  } // end of compute() method
+
+
+/*
+  merge() method
+
+  After all pieces are done, add our mouse captions to the caller's store and
+  our other lines to the caller's list, in file order.  Can only be called
+  once.
+*/
+  void merge(CharMap4Captions target, ArrayList<String> lines)
+  {
+    if (first != null)            // was this piece split?
+    {
+      first.merge(target, lines); // yes, earlier half goes first
+      second.merge(target, lines);
+    }
+    else
+    {
+      target.putAll(store);       // no, add what we found directly
+      lines.addAll(others);
+    }
+
+    /* The fork-join pool may hold on to finished tasks for a while, so don't
+    let them keep our results. */
+
+    data = null;
+    first = second = null;
+    others = null;
+    store = null;
+  } // end of merge() method
+
+} // end of CharMap4LoadTask class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  CharMap4Grid class
+
+  This class draws the character grid and listens for mouse and scroll events.
+  Keyboard events are handled by the main class and mimic the scroll bar.
+*/
+
+class CharMap4Grid extends JPanel implements ActionListener, ChangeListener,
+  MouseListener, MouseMotionListener, MouseWheelListener
+{
+  /* constants */
+
+  static final Color GRID_COLOR = Color.LIGHT_GRAY; // color of boxes, lines
+  static final int GRID_WIDTH = 2; // width of grid lines in pixels
+  static final int CAPTION_CACHE = 1024; // saved mouse captions, power of 2
+  static final int MOUSE_DRIFT = 10; // pixel movement allowed on mouse click
+  static final short NO_OFFSET = Short.MIN_VALUE; // offset not calculated yet
+  static final int NO_MOUSE = -1; // index when mouse not on defined character
+  static final Color PANEL_COLOR = Color.WHITE; // normal background color
+  static final int PANEL_MARGIN = 5; // outside margin of panel in pixels
+  static final int SCROLL_FRAME = 16; // milliseconds per scroll update (frame)
+  static final int SHARE_CAPTION = 8; // most shared characters in a caption
+  static final int SHARE_MENU = 40; // most shared characters in pop-up menu
+  static final Color TEXT_COLOR = Color.BLACK; // color of all display text
+  static final int TEXT_MARGIN = 4; // margin inside cell for each character
+  static final int TILE_PAD = 4;  // cached tiles have 1/4 cell extra per side
+
+  /* instance variables */
+
+  CharMap4Atlas atlas;            // cached images of characters
+  long[] captionKeys;             // cell information for each saved caption
+  String[] captionTexts;          // saved mouse captions, or <null> if empty
+  int clickIndex;                 // cell index of clicked character
+  int clickStartX, clickStartY;   // starting pixel coordinates of mouse click
+  int cornerIndex;                // cell index of top-left corner
+  FontMetrics fontData;           // information about current display font
+  int horizStep;                  // horizontal offset from one cell to next
+  int hoverIndex;                 // cell index of mouse over character
+  int lineAscent;                 // number of pixels above baseline
+  int lineHeight;                 // height of each display line in pixels
+  int maxWidth;                   // maximum pixel width of all characters
+  int panelColumns;               // number of complete text columns displayed
+  int panelCount;                 // saved value of <cellCount> used previously
+  Font panelFont;                 // saved font for drawing text on this panel
+  int panelHeight, panelWidth;    // saved panel height and width in pixels
+  int panelRows;                  // number of complete lines (rows) displayed
+  CharMap4Prefetch prefetch;      // draws pages above and below ahead of time
+  CharMap4Layout prefetchLayout;  // copy of drawing information, or <null>
+  int rowCorner;                  // value of <cornerIndex> for <rowVectors>
+  FontRenderContext rowRender;    // context used to create <rowVectors>
+  GlyphVector[] rowVectors;       // glyph mode: one vector per visible row
+  String scanMethod;              // how characters were found in font
+  CharMap4Scan scanner;           // background scan of <panelFont>, or null
+  long scrollApplied;             // number of scroll positions we displayed
+  long scrollDropped;             // number of positions replaced before shown
+  boolean scrollPending;          // true if scroll bar changed during frame
+  javax.swing.Timer scrollTimer;  // ends each frame of scroll updates
+  int vertiStep;                  // vertical offset from one cell to next
+
+  /* To switch between displaying characters and displaying raw glyphs, we
+  create identical information structures for both, and switch only object
+  references.  A "cell" is our generic name for either one or the other. */
+
+  int[] cellChar;                 // unique character number, or -1
+  int cellCount;                  // number of displayed characters or glyphs
+  int[] cellGlyph;                // unique glyph number, or -1
+  short[] cellOffset;             // pixels to center in cell, or <NO_OFFSET>
+  boolean glyphMode;              // true if cells are glyphs, not characters
+
+  int[] charChar;                 // as above, but for Unicode characters
+  int charCount;
+  int[] charGlyph;
+  short[] charOffset;
+
+  int[] glyphChar;                // as above, but for raw glyph numbers
+  int glyphCount;
+  int[] glyphGlyph;
+  short[] glyphOffset;
+
+  int[] shareChar;                // all characters for each glyph, or null
+  int[] shareStart;               // see CharMap4Scan.shareBuild()
+
+  /* class constructor */
+
+  public CharMap4Grid()
+  {
+    super();                      // initialize our superclass first (JPanel)
+
+    /* Set class instance variables to undefined values that we will recognize
+    if we are called before the layout and first "paint" is complete. */
+
+    atlas = new CharMap4Atlas();  // no cached images until first paint
+    captionKeys = new long[CAPTION_CACHE]; // no mouse captions saved yet
+    captionTexts = new String[CAPTION_CACHE];
+    cellCount = charCount = glyphCount = 0; // no chars or glyphs to display
+    charOffset = glyphOffset = null; // no centering offsets calculated
+    glyphMode = false;            // cells are characters until first paint
+    clickIndex = NO_MOUSE;        // cell index of clicked character
+    clickStartX = clickStartY = NO_MOUSE; // no starting coordinates for click
+    cornerIndex = 0;              // cell index of top-left corner
+    fontData = null;              // information about current display font
+    horizStep = 100;              // horizontal offset from one cell to next
+    hoverIndex = NO_MOUSE;        // cell index of mouse over character
+    lineAscent = 100;             // number of pixels above baseline
+    lineHeight = 100;             // height of each display line in pixels
+    maxWidth = 100;               // maximum pixel width of all characters
+    panelColumns = 10;            // number of complete text columns displayed
+    panelCount = -1;              // saved value of <cellCount> used previously
+    panelFont = null;             // saved font for drawing text on this panel
+    panelHeight = panelWidth = -1; // saved panel height and width in pixels
+    panelRows = 10;               // number of complete lines (rows) displayed
+    prefetch = new CharMap4Prefetch(); // thread isn't started until needed
+    prefetchLayout = null;        // no copy of drawing information yet
+    rowVectors = null;            // no glyph vectors for rows yet
+    scanMethod = null;            // no font has been scanned yet
+    scanner = null;               // no background scan of font in progress
+    scrollApplied = scrollDropped = 0; // no scroll positions seen yet
+    scrollPending = false;        // no scroll change waiting for next frame
+    scrollTimer = new javax.swing.Timer(SCROLL_FRAME, (ActionListener) this);
+    scrollTimer.setRepeats(false); // one frame at a time, only when scrolling
+    shareChar = shareStart = null; // no lists of characters for each glyph
+    vertiStep = 100;              // vertical offset from one cell to next
+
+    /* Install our mouse and scroll listeners. */
+
+    this.addMouseListener((MouseListener) this);
+    this.addMouseMotionListener((MouseMotionListener) this);
+    this.addMouseWheelListener((MouseWheelListener) this);
+//  this.setFocusable(false);     // we don't handle keyboard input, owner does
 
   } // end of CharMap4Grid() constructor
 
 
 /*
-  clear() method
+  actionPerformed() method
+
+  The only action events that we receive are from <scrollTimer> at the end of
+  each frame while scrolling.  If the scroll bar changed during the frame, show
+  the latest position and start another frame.  Otherwise, let the timer stop.
+*/
+  public void actionPerformed(ActionEvent event)
+  {
+    if (scrollPending)            // did the scroll bar change during frame?
+    {
+      scrollPending = false;      // yes, we are about to catch up
+      scrollApply();              // show only the latest position
+      scrollTimer.restart();      // and wait for another full frame
+    }
+  } // end of actionPerformed() method
+
+
+/*
+  captionBuild() method
+
+  Construct the mouse caption for a cell index, which must be defined.
+*/
+  String captionBuild(int index)
+  {
+    StringBuffer buffer;          // faster than String for multiple appends
+    int ch;                       // one character from string as an integer
+
+    buffer = new StringBuffer();  // allocate empty string buffer for result
+    ch = cellChar[index];         // character number or -1 if unmapped glyph
+
+    /* When displaying glyphs, always show the glyph number.  Then try to add
+    information for a corresponding character number. */
+
+    if (CharMap4.glyphFlag)       // are we displaying raw glyphs?
+    {
+      buffer.append("Glyph ");
+      buffer.append(CharMap4.formatComma.format(cellGlyph[index]));
+      buffer.append(" = ");
+      if (ch < 0)
+        buffer.append("no Unicode character mapping");
+    }
+
+    /* Java maps old 8-bit non-Unicode dingbat (symbol) fonts to the range
+    between 0xF020 to 0xF0FF.  Since this is in the "private use" area of
+    Unicode, we don't have a meaningful caption anyway unless we assume a
+    remapping. */
+
+    if ((ch >= 0xF020) && (ch <= 0xF0FF) && (charCount <= 256))
+    {
+      buffer.append(CharMap4.unicodeNotation(ch));
+      buffer.append(" =? ");
+      if (ch < 0xF07F)            // remapping to standard keyboard?
+      {
+        ch -= 0xF000;             // continue by assuming this character
+      }
+      else if (CharMap4.mswinFlag) // are we running on Microsoft Windows?
+      {
+        buffer.append(CharMap4.unicodeNotation(ch - 0xF000));
+        buffer.append(" = ");
+        buffer.append(CharMap4.winaltNotation(ch - 0xF000));
+        ch = -1;                  // that's the end of the caption
+      }
+      else                        // not keyboard map, not running Windows
+      {
+        buffer.append(CharMap4.unicodeNotation(ch - 0xF000));
+        buffer.append(" = ");
+        buffer.append("decimal ");
+        buffer.append(CharMap4.formatComma.format(ch - 0xF000));
+        ch = -1;                  // that's the end of the caption
+      }
+    }
+
+    /* Get a standard caption string if we still have a character number. */
+
+    if (ch >= 0)                  // do we have a character number?
+    {
+      buffer.append(CharMap4.captionGet(ch)); // get the standard caption
+    }
+
+    /* A glyph may be used by more than one character, such as a letter and
+    a compatibility character that looks the same.  List the others. */
+
+    if (CharMap4.glyphFlag && (shareStart != null))
+      shareCaption(buffer, cellGlyph[index], cellChar[index]);
+    return(buffer.toString());    // convert string buffer to regular string
+  } // end of captionBuild() method
+
+
+/*
+  captionCell() method
+
+  Return the mouse caption for a cell index, which must be defined.  Moving the
+  mouse across the grid asks for many captions, often the same ones again, and
+  each caption takes several string buffers and number formats to build.  We
+  save recent captions in a small direct-mapped table, keyed by the display
+  mode and the cell's character and glyph numbers, so that asking again just
+  returns the same string.  Captions aren't saved until all caption strings
+  have been loaded, because they would change.
+*/
+  String captionCell(int index)
+  {
+    long key = (((long) cellGlyph[index]) << 32) // glyph number, or -1
+      | ((cellChar[index] & 0x7FFFFFFFL) << 1) // character number, or -1
+      | (CharMap4.glyphFlag ? 1 : 0); // glyph captions differ from chars
+    int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 54); // 10-bit hash
+    slot &= (CAPTION_CACHE - 1);  // in case table size is changed
+    if ((captionTexts[slot] != null) && (captionKeys[slot] == key))
+      return(captionTexts[slot]); // same caption as last time
+    String text = captionBuild(index); // build caption the slow way
+    if (CharMap4.captionReady)    // have all caption strings been loaded?
+    {
+      captionKeys[slot] = key;    // yes, save this caption for next time
+      captionTexts[slot] = text;
+    }
+    return(text);
+  } // end of captionCell() method
+
+
+/*
+  captionClear() method
+
+  Forget all saved mouse captions, because the font or its character list has
+  changed.  (The display mode is part of each saved key.)
+*/
+  void captionClear()
+  {
+    Arrays.fill(captionTexts, null); // empty entries have <null> captions
+  }
+
+
+/*
+  clear() method
+
+  The caller wants us to initialize the display, from the beginning.  Flag our
+  class variables so that this will happen when the panel is next redrawn.
+*/
+  void clear()
+  {
+    if (scanner != null)          // is a scan running for an older font?
+    {
+      scanner.cancel();           // yes, don't wait for stale results
+      scanner = null;             // and forget that the scan exists
+    }
+    panelFont = null;             // saved font for drawing text on this panel
+    this.repaint();               // mark ourselves as needing to be repainted
+  }
+
+
+/*
+  convertMouse() method
+
+  Convert mouse coordinates to a cell index.  Return <NO_MOUSE> if the mouse is
+  not well-centered on a defined character.
+*/
+  int convertMouse(MouseEvent event)
+  {
+    int result;                   // converted cell index or <NO_MOUSE>
+
+    if (panelFont == null)        // can't do conversion if we haven't painted
+      return(NO_MOUSE);           // tell caller to come back some other time
+
+    int colOff = event.getX() - GRID_WIDTH - PANEL_MARGIN; // known margins
+    int colNum = colOff / horizStep; // convert pixels to column number
+    int colRem = colOff % horizStep; // how far inside cell is the mouse?
+    if ((colNum >= panelColumns) || (colRem < TEXT_MARGIN)
+      || (colRem > (horizStep - GRID_WIDTH - TEXT_MARGIN)))
+    {
+      return(NO_MOUSE);           // horizontal coordinate is out of range
+    }
+
+    int rowOff = event.getY() - GRID_WIDTH - PANEL_MARGIN; // known margins
+    int rowNum = rowOff / vertiStep; // convert pixels to row number
+    int rowRem = rowOff % vertiStep; // how far inside cell is the mouse?
+    if ((rowRem < TEXT_MARGIN)
+      || (rowRem > (vertiStep - GRID_WIDTH - TEXT_MARGIN)))
+    {
+      return(NO_MOUSE);           // vertical coordinate is out of range
+    }
+
+    result = cornerIndex + (rowNum * panelColumns) + colNum;
+    if (result >= cellCount)      // is the mouse beyond the last character?
+      return(NO_MOUSE);           // character index is out of range
+
+    return(result);               // give caller a valid character index
+
+  } // end of convertMouse() method
+
+
+/*
+  mouseClicked(), mouseDragged(), ..., mouseReleased() methods
+
+  These are the mouse click and movement listeners.
+*/
+  public void mouseClicked(MouseEvent event) { /* See mouseReleased(). */ }
+
+  public void mouseDragged(MouseEvent event)
+  {
+    mouseMoved(event);            // treat click-and-drag as simple movement
+  }
+
+  public void mouseEntered(MouseEvent event) { /* not used */ }
+
+  public void mouseExited(MouseEvent event) { /* not used */ }
+
+  public void mouseMoved(MouseEvent event)
+  {
+    /* Called when the mouse changes position, often pixel by pixel.  We only
+    use this for a mouse caption, which doesn't actually follow the mouse, as
+    that would be annoying.  The text appears in a fixed location at the top of
+    the screen.  Mouse movement can change a "click" into a "drag".  We don't
+    automatically cancel our click highlighting upon movement, because some
+    tolerance is more comfortable for users. */
+
+    int index;                    // cell index for character or glyph
+    String text;                  // mouse caption for this cell, if any
+
+    /* Fetch the correct caption for the cell pointed to by the mouse. */
+
+    index = convertMouse(event);  // convert pixel coordinates to index value
+    text = null;                  // assume no changes to caption string
+    if (index < 0)                // is mouse is over defined character?
+    {
+      repaintCell(hoverIndex);    // no, repaint if position has changed
+      hoverIndex = NO_MOUSE;      // this character is no longer highlighted
+      text = CharMap4.EMPTY_STATUS; // remove the caption string, if any
+    }
+    else if (hoverIndex != index) // has there been a change in position?
+    {
+      repaintCell(hoverIndex);    // old cell is no longer highlighted
+      hoverIndex = index;         // turn on highlighting for this character
+      repaintCell(hoverIndex);    // mark new cell as needing to be repainted
+      text = captionCell(index);  // saved or new caption for this cell
+    }
+
+    /* Don't waste time setting the dialog box if nothing has changed. */
+
+    if ((text != null)            // if we constructed a new caption string
+      && (CharMap4.statusDialog.getText().equals(text) == false))
+    {
+      CharMap4.statusDialog.setText(text); // copy new string to mouse caption
+    }
+
+    /* Avoid redrawing the screen unless the mouse has changed cells, and then
+    only redraw the cells that have changed. */
+
+    if ((clickIndex >= 0) && (clickIndex != index)) // away from old click?
+    {
+      repaintCell(clickIndex);    // mark old cell as needing to be repainted
+      clickIndex = NO_MOUSE;      // cancel forgotten highlight character
+    }
+
+  } // end of mouseMoved() method
+
+  public void mousePressed(MouseEvent event)
+  {
+    /* Called when a mouse button is first pressed, and before it is released.
+    We highlight the cell that the mouse is pointing at. */
+
+    int index;                    // cell index for character or glyph
+
+    clickStartX = clickStartY = NO_MOUSE; // no starting coordinates for click
+    index = convertMouse(event);  // convert pixel coordinates to index value
+    repaintCell(clickIndex);      // previous highlights, if any, must go
+    repaintCell(hoverIndex);
+    if (index >= 0)               // only if mouse is over defined character
+    {
+      clickIndex = hoverIndex = index; // turn on highlighting this character
+      clickStartX = event.getX(); // get starting X coordinate of mouse click
+      clickStartY = event.getY(); // get starting Y coordinate of mouse click
+      repaintCell(index);         // mark cell as needing to be repainted
+    }
+    else                          // cancel forgotten highlight characters
+      clickIndex = hoverIndex = NO_MOUSE;
+
+  } // end of mousePressed() method
+
+  public void mouseReleased(MouseEvent event)
+  {
+    /* Called after a mouse button is released, and before mouseClicked().  If
+    the mouse moves too much, then Java doesn't call mouseClicked(), so we use
+    this method to implement our own rules for how much a mouse can move while
+    being clicked. */
+
+    int index;                    // cell index for character or glyph
+
+    index = convertMouse(event);  // convert pixel coordinates to index value
+    if ((index >= 0)              // only if mouse is over defined character
+      && (clickIndex == index)    // and it's the same as when mouse pressed
+      && (Math.abs(clickStartX - event.getX()) <= MOUSE_DRIFT)
+      && (Math.abs(clickStartY - event.getY()) <= MOUSE_DRIFT))
+    {
+      /* Mouse is over a defined character or glyph. */
+
+      if ((event.getButton() != MouseEvent.BUTTON1) // right means not primary
+        || event.isAltDown() || event.isControlDown() || event.isShiftDown())
+      {
+        /* A right click or alternate key click invokes a pop-up menu with
+        options to copy character or glyph numbers, captions, etc. */
+
+        CharMap4.rightSaveCaption = CharMap4.statusDialog.getText(); // caption
+        CharMap4.rightSaveChar = cellChar[index]; // save character number
+        CharMap4.rightSaveGlyph = cellGlyph[index]; // save glyph number
+
+        CharMap4.rightCopyCaption.setEnabled((CharMap4.rightSaveCaption != null)
+          && (CharMap4.rightSaveCaption.length() > 0));
+        CharMap4.rightCopyGlyph.setEnabled(CharMap4.rightSaveGlyph >= 0);
+        CharMap4.rightCopyNotation.setEnabled(CharMap4.rightSaveChar >= 0);
+        CharMap4.rightCopyNumber.setEnabled(CharMap4.rightSaveChar >= 0);
+        CharMap4.rightCopyText.setEnabled(CharMap4.rightSaveChar >= 0);
+        shareMenu(cellGlyph[index]); // other characters for the same glyph
+
+        CharMap4.rightPopup.show(this, event.getX(), event.getY());
+      }
+      else
+      {
+        /* A left click or primary button click copies the character as text,
+        if there is a unique character number. */
+
+        if (cellChar[index] >= 0)
+          mouseReplaceText(CharMap4.charToString(cellChar[index]));
+      }
+    }
+
+    /* Avoid redrawing the screen unless the mouse has changed cells, and then
+    only redraw the cells that have changed. */
+
+    if (clickIndex >= 0)          // mouse release always ends click highlight
+    {
+      repaintCell(clickIndex);    // mark cell as needing to be repainted
+      clickIndex = NO_MOUSE;      // this character is no longer highlighted
+    }
+    clickStartX = clickStartY = NO_MOUSE; // no starting coordinates for click
+
+    if (hoverIndex != index)      // has there been a change in position?
+    {
+      repaintCell(hoverIndex);    // old cell is no longer highlighted
+      hoverIndex = index;         // turn on highlighting for this character
+      repaintCell(hoverIndex);    // mark new cell as needing to be repainted
+    }
+
+  } // end of mouseReleased() method
+
+
+/*
+  mouseReplaceText() method
+
+  After a mouse click, or the pop-up menu simulating a mouse click, call this
+  method with a string to be added to the sample text.
+*/
+  void mouseReplaceText(String text)
+  {
+    if (CharMap4.clickReplace)    // does each click replace sample text?
+      CharMap4.sampleDialog.setText(text);
+    else                          // insert character or replace selection
+      CharMap4.sampleDialog.replaceSelection(text);
+    CharMap4.copyText();          // copy all sample text to clipboard
+  }
+
+
+/*
+  shareCaption() and shareMenu() methods
+
+  List all characters that map to the same glyph, either in the mouse caption
+  (not including the character already shown) or as menu items in the pop-up
+  menu.  Long lists are cut short.  Nothing is known about shared characters
+  until the font scan has finished.
+*/
+  void shareCaption(StringBuffer buffer, int glyph, int ch)
+  {
+    int count;                    // number of other characters shown so far
+    int i;                        // index variable
+    int others;                   // number of other characters for this glyph
+
+    if ((glyph < 0) || (glyph >= glyphCount)) // is this a real glyph number?
+      return;                     // no, there is nothing to share
+
+    others = 0;                   // count characters other than <ch>
+    for (i = shareStart[glyph]; i < shareStart[glyph + 1]; i ++)
+      if (shareChar[i] != ch) others ++;
+    if (others == 0)              // is this glyph shared at all?
+      return;                     // no, leave caption unchanged
+
+    buffer.append(" (also ");
+    count = 0;                    // no other characters shown yet
+    for (i = shareStart[glyph]; i < shareStart[glyph + 1]; i ++)
+    {
+      if (shareChar[i] == ch)     // already shown at start of caption
+        continue;
+      if (count > 0)
+        buffer.append(", ");
+      if (count >= SHARE_CAPTION) // have we shown enough?
+      {
+        buffer.append(CharMap4.formatComma.format(others - count));
+        buffer.append(" more");
+        break;
+      }
+      buffer.append(CharMap4.unicodeNotation(shareChar[i]));
+      count ++;
+    }
+    buffer.append(")");
+
+  } // end of shareCaption() method
+
+  void shareMenu(int glyph)
+  {
+    int i;                        // index variable
+    JMenuItem item;               // one menu item for a shared character
+
+    CharMap4.rightShared.removeAll(); // forget characters from last time
+    if ((shareStart == null) || (glyph < 0) || (glyph >= glyphCount)
+      || ((shareStart[glyph + 1] - shareStart[glyph]) < 2))
+    {
+      CharMap4.rightShared.setEnabled(false); // glyph isn't shared, or unknown
+      return;
+    }
+
+    for (i = shareStart[glyph]; i < shareStart[glyph + 1]; i ++)
+    {
+      if ((i - shareStart[glyph]) >= SHARE_MENU) // have we shown enough?
+      {
+        item = new JMenuItem(CharMap4.formatComma.format(shareStart[glyph + 1]
+          - i) + " more");
+        item.setEnabled(false);   // just information, not a choice
+        if (CharMap4.buttonFont != null) item.setFont(CharMap4.buttonFont);
+        CharMap4.rightShared.add(item);
+        break;
+      }
+      item = new JMenuItem(CharMap4.unicodeNotation(shareChar[i]));
+      item.setActionCommand(String.valueOf(shareChar[i])); // character number
+      item.addActionListener(CharMap4.userActions);
+      if (CharMap4.buttonFont != null) item.setFont(CharMap4.buttonFont);
+      CharMap4.rightShared.add(item);
+    }
+    CharMap4.rightShared.setEnabled(true);
+
+  } // end of shareMenu() method
+
+
+/*
+  mouseWheelMoved() method
+
+  This is the mouse wheel listener, for the scroll wheel on some mice.  The
+  "unit" scroll uses the local system preferences for how many lines/rows per
+  click of the mouse.  The "unit" scroll may be too big if there are only one
+  or two lines in the display.
+
+  The mouse wheel listener has no interaction with the other mouse listeners
+  above.
+*/
+  public void mouseWheelMoved(MouseWheelEvent event)
+  {
+    switch (event.getScrollType()) // different mice scroll differently
+    {
+      case (MouseWheelEvent.WHEEL_BLOCK_SCROLL):
+        CharMap4.gridScroll.setValue(CharMap4.gridScroll.getValue()
+          + (event.getWheelRotation()
+          * CharMap4.gridScroll.getBlockIncrement()));
+        break;
+
+      case (MouseWheelEvent.WHEEL_UNIT_SCROLL):
+        int i = CharMap4.gridScroll.getBlockIncrement(); // maximum scroll rows
+        i = Math.max((-i), Math.min(i, event.getUnitsToScroll())); // limits
+        CharMap4.gridScroll.setValue(CharMap4.gridScroll.getValue() + i);
+                                  // scroll using limited local preferences
+        break;
+
+      default:                    // ignore anything that we don't recognize
+        break;
+    }
+  } // end of mouseWheelMoved() method
+
+
+/*
+  paintComponent() method
+
+  This is the "paint" method for a Java Swing component.  We have to worry
+  about the window size changing, new options chosen by the user, etc.  There
+  are many temporary variables in this method, because some calculations are
+  difficult and declaring all variables at the beginning would be worse than
+  declaring them when they are first used.
+*/
+  protected void paintComponent(Graphics context)
+  {
+    Graphics2D gr2d;              // special subclass of graphics context
+    FontRenderContext render;     // needed for displaying low-level glyphs
+
+    /* Most of this code would work with the standard Graphics object, but some
+    of the glyph routines need the newer Graphics2D subclass. */
+
+    gr2d = (Graphics2D) context;  // another name for the same graphics context
+    render = gr2d.getFontRenderContext(); // for displaying low-level glyphs
+
+    /* Erase the damaged part of the panel using our choice of background
+    colors.  Mouse movement only damages one or two cells, and there is no
+    point in redrawing the whole panel for that. */
+
+    Rectangle clip = gr2d.getClipBounds(); // damaged area, or <null> for all
+    if (clip == null)             // no clip means everything is damaged
+      clip = new Rectangle(0, 0, this.getWidth(), this.getHeight());
+    gr2d.setColor(PANEL_COLOR);   // flood fill with background color
+    gr2d.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+    /* If the font has changed, then we need to redo both the height and the
+    width, and we must collect new information about the font. */
+
+    boolean redoHeight = false;   // assume that panel height doesn't change
+    boolean redoWidth = false;    // assume that panel width doesn't change
+
+    if (CharMap4.displayFont == null) // is there a font to display characters?
+      return;                     // no, then can't do anything more
+    else if (CharMap4.displayFont.equals(panelFont) == false) // a new font?
+    {
+      clickIndex = hoverIndex = NO_MOUSE; // cancel forgotten highlight char
+      cornerIndex = 0;            // force top-left corner to first character
+      panelFont = CharMap4.displayFont; // save current character display font
+      panelHeight = panelWidth = -1; // force both directions to be redone
+
+      /* Get the font metrics.  We want the "official" maximum height and
+      width.  Note that even though a font provides this information, there may
+      still be characters that draw outside the declared bounds.  For critical
+      applications, you would have to call FontMetrics.getMaxCharBounds(), and
+      that may be slow if the font is very large (not tested). */
+
+      fontData = gr2d.getFontMetrics(panelFont); // save a copy of metrics
+      lineAscent = fontData.getAscent(); // number of pixels above baseline
+      lineHeight = fontData.getHeight(); // height of each line in pixels
+      maxWidth = Math.max(10, fontData.getMaxAdvance()); // maximum all chars
+      horizStep = maxWidth + (2 * TEXT_MARGIN) + GRID_WIDTH; // between cells
+      vertiStep = lineHeight + (2 * TEXT_MARGIN) + GRID_WIDTH; // between cells
+
+      /* Enumerating every possible Unicode character can take several seconds
+      for large fonts, so that work is done by a separate thread.  Until the
+      thread finishes, we display whatever characters and glyphs it has found
+      so far, which always start at the beginning.  Any previous scan is for a
+      font that we no longer want, and is cancelled.  The mapping from
+      characters to glyphs doesn't depend upon the point size, so a font that
+      has already been scanned at another size only needs the new metrics
+      above. */
+
+      if (scanner != null)        // is there an older scan still running?
+        scanner.cancel();         // yes, tell it to stop as soon as possible
+      scanner = null;             // no scan is running for the new font
+      panelCount = -1;            // force scroll bar to be reset after scan
+      rowVectors = null;          // glyph vectors for rows are now wrong
+      captionClear();             // mouse captions depend on the font
+      charOffset = glyphOffset = null; // centering depends on font and size
+      prefetchLayout = null;      // pre-drawn pages are now wrong
+
+      CharMap4Scan cached = CharMap4Scan.cacheGet(panelFont);
+      if (cached != null)         // have we seen this font family and style?
+        scanInstall(cached);      // yes, re-use the characters and glyphs
+      else                        // no, must enumerate the whole font
+      {
+        cellCount = charCount = glyphCount = 0; // nothing to display until done
+        charChar = charGlyph = glyphChar = glyphGlyph = null;
+        shareChar = shareStart = null; // not built until scan is finished
+        scanner = new CharMap4Scan(this, panelFont, render);
+        Thread thread = new Thread(scanner, "fontScan");
+        thread.start();           // run separate thread to enumerate font
+        CharMap4.statusDialog.setText("Scanning font for characters and"
+          + " glyphs ...");       // subvert "mouse caption" for progress
+      }
+    }
+
+    /* While the font is being scanned, take any new results and draw them.
+    The scroll bar grows as more characters are found.  Show a message until
+    there is something to draw.  User input is still accepted, since the event
+    thread isn't waiting for the scan. */
+
+    if (scanner != null)          // is there a scan in progress?
+      scanProgress(scanner);      // yes, use results so far (if any)
+    if ((scanner != null) && ((CharMap4.glyphFlag ? glyphCount : charCount)
+      == 0))                      // no results yet for this display mode?
+    {
+      gr2d.setColor(TEXT_COLOR);  // show a simple message in the panel
+      gr2d.drawString("Scanning font ...", (PANEL_MARGIN + GRID_WIDTH
+        + TEXT_MARGIN), (PANEL_MARGIN + GRID_WIDTH + TEXT_MARGIN
+        + gr2d.getFontMetrics().getAscent()));
+      return;                     // come back after the scan has more
+    }
+
+    /* Protect ourselves from fonts that have no displayable characters.  The
+    status message already shows the counts from the finished scan. */
+
+    if ((scanner == null) && ((charCount <= 0) || (glyphCount <= 0)))
+    {
+      panelFont = null;           // crude, but prevents font from being used
+      return;                     // give up, again and again, on each call
+    }
+
+    /* Set up our display cells using either character or glyph data.  The
+    centering offsets grow with the data while a font is being scanned, since
+    new entries are only added at the end. */
+
+    charOffset = offsetGrow(charOffset, charCount);
+    glyphOffset = offsetGrow(glyphOffset, glyphCount);
+    glyphMode = CharMap4.glyphFlag; // same choice for this whole paint
+    if (glyphMode)                // are we displaying raw glyphs?
+    {
+      cellChar = glyphChar;
+      cellCount = glyphCount;
+      cellGlyph = glyphGlyph;
+      cellOffset = glyphOffset;
+    }
+    else                          // no, doing Unicode characters
+    {
+      cellChar = charChar;
+      cellCount = charCount;
+      cellGlyph = charGlyph;
+      cellOffset = charOffset;
+    }
+
+    /* If the panel width has changed, then we need to recalculate how many
+    complete columns of text can be displayed inside this panel with the
+    specified margins.  We don't want partial columns, because there is no
+    horizontal scroll bar, only a vertical scroll bar. */
+
+    if (redoWidth || (this.getWidth() != panelWidth))
+    {
+      panelWidth = this.getWidth(); // save current panel width in pixels
+      redoWidth = true;           // remember that the width has changed
+
+      panelColumns = Math.max(1,
+        ((panelWidth - (2 * PANEL_MARGIN) - GRID_WIDTH) / horizStep));
+    }
+
+    /* If the panel height has changed, then we need to recalculate how many
+    complete lines (rows) can be displayed.  The scroll bar handles any partial
+    later lines that aren't included in our row count. */
+
+    if (redoHeight || (this.getHeight() != panelHeight))
+    {
+      panelHeight = this.getHeight(); // save current panel height in pixels
+      redoHeight = true;          // remember that the height has changed
+
+      panelRows = Math.max(1,
+        ((panelHeight - (2 * PANEL_MARGIN) - GRID_WIDTH) / vertiStep));
+    }
+
+    /* When the window size changes, we need to recalculate several settings
+    for the vertical scroll bar.  These are otherwise static except the current
+    position.  As a programming note, please call setValues() when setting more
+    than one of the parameters, otherwise the change listener may fire between
+    calls to the individual methods for setting parameters.  The maximum value
+    is one more than what you might expect, but that's what Java wants. */
+
+    if ((cellCount != panelCount) || redoHeight || redoWidth) // changed size?
+    {
+      panelCount = cellCount;     // save current number of displayed cells
+      rowVectors = null;          // glyph vectors for rows are now wrong
+      int row = cornerIndex / panelColumns;
+                                  // convert character index to row number
+      row = Math.max(0, Math.min(row, ((cellCount / panelColumns)
+        - panelRows + 1)));       // if possible, don't leave blank rows at end
+      CharMap4.gridScroll.setValues(row, // scroll value
+        panelRows,                // extent (visible amount)
+        0,                        // minimum: always zero
+        ((cellCount + panelColumns - 1) / panelColumns));
+                                  // maximum: allow partial last row
+      cornerIndex = CharMap4.gridScroll.getValue() * panelColumns;
+                                  // convert scroll row back to character index
+
+      CharMap4.gridScroll.setBlockIncrement(Math.max(1, (panelRows - 1)));
+                                  // lines/rows per "scroll one page"
+      CharMap4.gridScroll.setUnitIncrement(1); // rows per "scroll one line"
+      prefetchLayout = null;      // pre-drawn pages are now wrong
+    }
+
+    /* Pages above and below the visible grid are drawn ahead of time by a
+    background thread, in horizontal strips that are one page high, from a
+    copy of our drawing information.  If both strips for the visible grid are
+    ready, then we copy those and redraw only the highlighted cells, plus the
+    margins above and below the strips.  Strips aren't used while the font is
+    being scanned, because cells are added.
+
+    Everything is drawn from a layout: a snapshot of our drawing information
+    for this paint only (see CharMap4Layout). */
+
+    if (glyphMode)                // are we displaying raw glyphs?
+      rowVectorsCheck(render);    // yes, keep vectors for rows still visible
+    CharMap4Layout layout = new CharMap4Layout(this, true); // for event thread
+
+    if ((scanner == null) && (panelFont != null)) // is the grid stable?
+    {
+      if ((prefetchLayout == null) || (prefetchLayout.glyphMode != glyphMode))
+        prefetchLayout = new CharMap4Layout(this, false); // for other thread
+      int stripRows = panelRows + 1; // include partial next row
+      int cornerRow = cornerIndex / panelColumns; // grid row at top of panel
+      int first = cornerRow / stripRows; // strip at top of panel
+      int last = (cornerRow + panelRows) / stripRows; // strip at bottom
+      int lastStrip = Math.max(0, ((((cellCount + panelColumns - 1)
+        / panelColumns) - 1) / stripRows)); // last strip with any cells
+      if (prefetch.want(prefetchLayout, gr2d, first, last, Math.max(0,
+        (first - 1)), Math.min(lastStrip, (last + 1))))
+      {
+        BufferedImage firstImage = prefetch.get(first); // may be <null>
+        BufferedImage lastImage = prefetch.get(last);
+        if ((firstImage != null) && (lastImage != null))
+        {
+          prefetchDraw(gr2d, firstImage, ((first * stripRows) - cornerRow));
+          if (last != first)      // does view reach into a second strip?
+            prefetchDraw(gr2d, lastImage, ((last * stripRows) - cornerRow));
+          int bottom = PANEL_MARGIN + (stripRows * vertiStep); // end of rows
+          prefetchRedraw(gr2d, render, clip, layout, new Rectangle(0, 0,
+            panelWidth, PANEL_MARGIN)); // margin above visible rows
+          prefetchRedraw(gr2d, render, clip, layout, new Rectangle(0, bottom,
+            panelWidth, (panelHeight - bottom))); // margin below visible rows
+          prefetchRedraw(gr2d, render, clip, layout,
+            cellRectangle(hoverIndex));
+          prefetchRedraw(gr2d, render, clip, layout,
+            cellRectangle(clickIndex));
+          prefetch.countUsed();   // count paints done from pre-drawn strips
+          return;
+        }
+      }
+    }
+
+    paintGridArea(gr2d, render, clip, layout); // draw all of damaged area
+
+  } // end of paintComponent() method
+
+
+/*
+  paintGridArea() method
+
+  Draw all grid lines, backgrounds, characters, and glyphs that touch the given
+  rectangle, which the caller has already cleared to the normal background.
+
+  Draw each character that is wholely or partially visible in the current
+  grid, including a partial next line, but only for rows and columns that
+  touch the damaged area.  Each cell's rectangle includes the grid lines on
+  its right and bottom, which overlap the next cell.  Some fonts draw outside
+  the declared maximum height and width, so we use two passes: first draw all
+  grid lines and backgrounds, then draw all glyphs on top.  Otherwise, the
+  background of one cell would erase parts of the glyph in the cell before it.
+
+  This and the other paintGrid*() methods are static, and draw only from the
+  given layout, so that the prefetch thread can call them without touching
+  anything that the event thread changes.
+*/
+  static void paintGridArea(Graphics2D gr2d, FontRenderContext render,
+    Rectangle clip, CharMap4Layout lay)
+  {
+    if (lay.atlas != null)        // do we have a tile cache?
+    {
+      lay.atlas.prepare(gr2d, lay.panelFont, (lay.horizStep - GRID_WIDTH
+        + (2 * (lay.horizStep / TILE_PAD))), (lay.vertiStep - GRID_WIDTH
+        + (2 * (lay.vertiStep / TILE_PAD)))); // tiles must match font, size
+    }
+    int firstCol = Math.max(0, ((clip.x - PANEL_MARGIN - GRID_WIDTH)
+      / lay.horizStep));          // first column touching damaged area
+    int lastCol = Math.min((lay.panelColumns - 1), ((clip.x + clip.width - 1
+      - PANEL_MARGIN) / lay.horizStep)); // last column touching damaged area
+    int firstRow = Math.max(0, ((clip.y - PANEL_MARGIN - GRID_WIDTH)
+      / lay.vertiStep));          // first row touching damaged area
+    int lastRow = Math.min(lay.panelRows, ((clip.y + clip.height - 1
+      - PANEL_MARGIN) / lay.vertiStep)); // last row, including partial row
+    paintGridLines(gr2d, lay, firstRow, lastRow, firstCol, lastCol);
+
+    /* Glyphs in neighboring cells may reach into the damaged area, and their
+    overflow was just erased, so the second pass includes one more row and
+    column on each side.  The clip bounds stop them from drawing elsewhere.
+    paintGridCell() ignores index values that aren't defined.
+
+    Raw glyphs are drawn one row at a time, with one glyph vector per row that
+    is kept until the grid changes.  Scrolling keeps the vectors for rows that
+    are still visible.  A clicked cell is then drawn again in reversed colors,
+    over its own highlighted background. */
+
+    firstRow = Math.max(0, (firstRow - 1)); // include neighboring cells
+    lastRow = Math.min(lay.panelRows, (lastRow + 1));
+    offsetFill(render, lay, (lay.cornerIndex + (firstRow * lay.panelColumns)),
+      (lay.cornerIndex + ((lastRow + 1) * lay.panelColumns))); // visible only
+    if (lay.glyphMode)            // are we displaying raw glyphs?
+    {
+      paintGridRows(gr2d, render, lay, firstRow, lastRow);
+      int click = lay.clickIndex; // clicked cell, if any
+      if ((click >= lay.cornerIndex) && (click < lay.cellCount))
+      {
+        int x = (((click - lay.cornerIndex) % lay.panelColumns)
+          * lay.horizStep) + PANEL_MARGIN; // top-left corner of clicked cell
+        int y = (((click - lay.cornerIndex) / lay.panelColumns)
+          * lay.vertiStep) + PANEL_MARGIN;
+        paintGridText(gr2d, render, lay, click, (x + GRID_WIDTH),
+          (y + GRID_WIDTH));      // reversed colors for clicked cell
+      }
+    }
+    else                          // no, displaying standard characters
+    {
+      for (int row = firstRow; row <= lastRow; row ++)
+      {
+        for (int col = Math.max(0, (firstCol - 1));
+          col <= Math.min((lay.panelColumns - 1), (lastCol + 1)); col ++)
+        {
+          paintGridCell(gr2d, render, lay, (lay.cornerIndex + (row
+            * lay.panelColumns) + col)); // paint each nearby cell
+        }
+      }
+    }
+  } // end of paintGridArea() method
+
+
+/*
+  offsetFill() and offsetGrow() methods
+
+  Each character or glyph is centered horizontally in its cell, which needs
+  the width of the character or glyph.  Instead of asking the font for every
+  cell on every paint, the offsets are calculated once for each font and point
+  size, and only for cells that have been visible.  Character offsets use the
+  character width, and glyph offsets use the glyph's advance, same as if they
+  were calculated each time.  All glyphs that are missing for one paint are
+  measured with a single glyph vector.  The offsets are filled in the
+  layout's own array, which only one thread uses.
+*/
+  static void offsetFill(FontRenderContext render, CharMap4Layout lay,
+    int first, int last)
+  {
+    int count;                    // number of offsets to calculate
+    int i;                        // index variable
+    int[] list;                   // glyph numbers for createGlyphVector()
+    short[] offsets;              // centering offsets in the layout
+
+    first = Math.max(0, first);   // only for defined cells
+    last = Math.min(lay.cellCount, last);
+    offsets = lay.cellOffset;
+    count = 0;                    // how many offsets are missing?
+    for (i = first; i < last; i ++)
+      if (offsets[i] == NO_OFFSET) count ++;
+    if (count == 0)               // are all offsets already known?
+      return;                     // yes, nothing more to do
+
+    if (lay.glyphMode)            // are we displaying raw glyphs?
+    {
+      list = new int[count];      // collect glyphs with missing offsets
+      count = 0;
+      for (i = first; i < last; i ++)
+        if (offsets[i] == NO_OFFSET) list[count ++] = lay.cellGlyph[i];
+      GlyphVector glyvector = lay.panelFont.createGlyphVector(render, list);
+      count = 0;
+      for (i = first; i < last; i ++)
+        if (offsets[i] == NO_OFFSET)
+          offsets[i] = (short) ((lay.maxWidth - ((int) glyvector
+            .getGlyphMetrics(count ++).getAdvanceX())) / 2);
+    }
+    else                          // no, displaying standard characters
+    {
+      for (i = first; i < last; i ++)
+        if (offsets[i] == NO_OFFSET)
+          offsets[i] = (short) ((lay.maxWidth - lay.fontData.charWidth(
+            lay.cellChar[i])) / 2);
+    }
+  } // end of offsetFill() method
+
+  short[] offsetGrow(short[] offsets, int count)
+  {
+    int old = (offsets == null) ? 0 : offsets.length; // offsets already known
+    if (old >= count)             // is the array big enough?
+      return(offsets);            // yes, keep everything as it is
+    short[] result = new short[Math.max(count, (2 * old))]; // room to grow
+    if (old > 0)
+      System.arraycopy(offsets, 0, result, 0, old);
+    Arrays.fill(result, old, result.length, NO_OFFSET);
+    return(result);
+  }
+
+
+/*
+  paintGridCell() method
+
+  The caller wants us to paint the character for one cell in the character
+  grid, after the grid lines and backgrounds have been drawn by
+  paintGridLines().  The cell may or may not be defined.  The cell may be
+  highlighted during mouse clicks.  Raw glyphs are drawn by paintGridRows()
+  instead, which is faster than tiles for glyphs.
+
+  Please note that many fonts draw outside of their declared bounding boxes!
+  View a font like "Lucida Console" before making any judgements about the
+  accuracy of this method.  Cached tiles have a margin of one quarter of a cell
+  on each side for glyphs that overflow.  Characters that overflow even further
+  are never put in a tile; they are drawn directly each time, with no limit.
+*/
+  static void paintGridCell(Graphics2D gr2d, FontRenderContext render,
+    CharMap4Layout lay, int index)
+  {
+    if (index >= lay.cellCount)   // is there a defined character?
+      return;                     // no, do nothing and return to caller
+
+    /* Calculate top-left drawing corner of the border for this cell. */
+
+    int x = (((index - lay.cornerIndex) % lay.panelColumns) * lay.horizStep)
+      + PANEL_MARGIN;
+    int y = (((index - lay.cornerIndex) / lay.panelColumns) * lay.vertiStep)
+      + PANEL_MARGIN;
+
+    /* Draw the defined character.  Rasterizing glyphs is slow for complex
+    fonts, so we copy an image from the tile cache when we can, and only draw
+    the character when the cache doesn't have it yet. */
+
+    CharMap4Atlas atlas = lay.atlas; // tile cache, or <null>
+    int slot = -1;                // tile with this character, if any
+    if ((atlas != null) && atlas.usable) // are cell images small enough?
+    {
+      /* The key is only the character and the click highlight.  The font,
+      point size, and display scaling are the same for all tiles, because
+      prepare() throws away every tile when any of them change. */
+
+      long key = (((long) lay.cellChar[index]) << 1)
+        | ((index == lay.clickIndex) ? 1 : 0); // what we draw, and how
+      int padX = lay.horizStep / TILE_PAD; // margin on each side of tile
+      int padY = lay.vertiStep / TILE_PAD;
+      slot = atlas.find(key);     // look for a tile with this image
+      if (slot == CharMap4Atlas.NO_TILE) // is the image already in the cache?
+      {
+        /* No, but only put the character in a tile if it fits inside the
+        tile, with one pixel to spare for anti-aliasing.  Otherwise, the tile
+        would crop whatever is drawn outside its margin. */
+
+        Rectangle2D bounds = lay.panelFont.createGlyphVector(render,
+          CharMap4.charToString(lay.cellChar[index])).getVisualBounds();
+        bounds.setRect((bounds.getX() + padX + TEXT_MARGIN
+          + lay.cellOffset[index]), (bounds.getY() + padY + TEXT_MARGIN
+          + lay.lineAscent), bounds.getWidth(), bounds.getHeight());
+        if (new Rectangle(1, 1, (atlas.tileWidth - 2), (atlas.tileHeight
+          - 2)).contains(bounds)) // does the character fit in a tile?
+        {
+          slot = atlas.claim(key); // yes, get a cleared tile for the image
+          paintGridText(atlas.tile, atlas.tile.getFontRenderContext(), lay,
+            index, padX, padY);   // draw into tile inside its margin
+        }
+        else
+          slot = atlas.refuse(key); // no, always draw this one directly
+      }
+      if (slot >= 0)              // do we have a tile for this character?
+        atlas.draw(gr2d, slot, (x + GRID_WIDTH - padX), (y + GRID_WIDTH
+          - padY));
+    }
+    if (slot < 0)                 // no tile, draw directly into the panel
+    {
+      paintGridText(gr2d, render, lay, index, (x + GRID_WIDTH),
+        (y + GRID_WIDTH));
+    }
+
+  } // end of paintGridCell() method
+
+
+/*
+  paintGridLines() method
+
+  First pass for painting the grid: draw the grid lines and highlighted
+  backgrounds for defined cells in the given rows and columns.  The caller has
+  already cleared the damaged area to the normal background color.  Instead of
+  filling two rectangles for each cell, we draw one long rectangle for each
+  horizontal or vertical line, as far as there are defined cells beside the
+  line.  Defined cells always start at the top-left corner, and there is at
+  most one partial row at the end.
+*/
+  static void paintGridLines(Graphics2D gr2d, CharMap4Layout lay,
+    int firstRow, int lastRow, int firstCol, int lastCol)
+  {
+    int index;                    // cell index beside a line
+    int last;                     // last row or column with a line
+
+    gr2d.setColor(GRID_COLOR);    // all lines in gridline color
+
+    /* Horizontal lines at the top of each row, plus the bottom of the last
+    row.  The row above (if any) decides how far a line goes to the right,
+    because it has at least as many defined cells as the row below.  This is
+    true even when the row above is scrolled out of view, so that the line is
+    the same as in pre-drawn strips, which include the row above. */
+
+    for (int row = firstRow; row <= (lastRow + 1); row ++)
+    {
+      index = Math.max(0, (lay.cornerIndex + ((row - 1)
+        * lay.panelColumns)));    // first cell in row above, if any
+      last = Math.min(lastCol, (lay.cellCount - 1 - index)); // last column
+      if (last < firstCol)        // are there defined cells beside line?
+        break;                    // no, and none for any row after this one
+      gr2d.fillRect(((firstCol * lay.horizStep) + PANEL_MARGIN), ((row
+        * lay.vertiStep) + PANEL_MARGIN), (((last - firstCol + 1)
+        * lay.horizStep) + GRID_WIDTH), GRID_WIDTH);
+    }
+
+    /* Vertical lines at the left of each column, plus the right of the last
+    column.  The cell to the left of a line (if any) decides how far the line
+    goes down. */
+
+    for (int col = firstCol; col <= (lastCol + 1); col ++)
+    {
+      index = lay.cornerIndex + Math.max(0, (col - 1));
+      if (index >= lay.cellCount) // is there a defined cell beside line?
+        break;                    // no, and none for any column after this
+      last = Math.min(lastRow, ((lay.cellCount - 1 - index)
+        / lay.panelColumns));     // last row with a defined cell beside line
+      if (last < firstRow)        // does line reach into damaged rows?
+        continue;                 // no, try the next column
+      gr2d.fillRect(((col * lay.horizStep) + PANEL_MARGIN), ((firstRow
+        * lay.vertiStep) + PANEL_MARGIN), GRID_WIDTH, (((last - firstRow + 1)
+        * lay.vertiStep) + GRID_WIDTH));
+    }
+
+    /* If we're highlighting, then fill the interior of the cell with another
+    color: the gridline color when the mouse is over a cell, or reversed
+    background and foreground during a click. */
+
+    paintGridHighlight(gr2d, lay, lay.hoverIndex, GRID_COLOR);
+    paintGridHighlight(gr2d, lay, lay.clickIndex, TEXT_COLOR);
+
+  } // end of paintGridLines() method
+
+  static void paintGridHighlight(Graphics2D gr2d, CharMap4Layout lay,
+    int index, Color color)
+  {
+    if ((index < lay.cornerIndex) || (index >= lay.cellCount)) // visible?
+      return;                     // nothing to highlight
+
+    int x = (((index - lay.cornerIndex) % lay.panelColumns) * lay.horizStep)
+      + PANEL_MARGIN;
+    int y = (((index - lay.cornerIndex) / lay.panelColumns) * lay.vertiStep)
+      + PANEL_MARGIN;
+    gr2d.setColor(color);
+    gr2d.fillRect((x + GRID_WIDTH), (y + GRID_WIDTH),
+      (lay.horizStep - GRID_WIDTH), (lay.vertiStep - GRID_WIDTH));
+  }
+
+
+/*
+  paintGridRows() method
+
+  Draw raw glyphs for the given rows, using one glyph vector per row, with
+  each glyph positioned and centered in its own cell.  On the event thread,
+  the vectors are saved in <rowVectors> by visible row number, so that when
+  the grid scrolls by whole rows, vectors for rows that are still visible move
+  to their new places (see rowVectorsCheck()).  A layout for the prefetch
+  thread has no saved vectors, and each strip is only drawn once anyway.
+*/
+  static void paintGridRows(Graphics2D gr2d, FontRenderContext render,
+    CharMap4Layout lay, int firstRow, int lastRow)
+  {
+    gr2d.setColor(TEXT_COLOR);    // normal color for all glyphs
+    for (int row = firstRow; row <= lastRow; row ++)
+    {
+      GlyphVector glyvector = (lay.rowVectors == null) ? null
+        : lay.rowVectors[row];    // may be <null>
+      if (glyvector == null)      // have we created a vector for this row?
+      {
+        int start = lay.cornerIndex + (row * lay.panelColumns); // first cell
+        int count = Math.min(lay.panelColumns, (lay.cellCount - start));
+        if (count <= 0)           // are there any glyphs in this row?
+          break;                  // no, and none in any row after this one
+
+        int[] list = new int[count]; // glyph numbers for createGlyphVector()
+        for (int i = 0; i < count; i ++)
+          list[i] = lay.cellGlyph[start + i];
+        glyvector = lay.panelFont.createGlyphVector(render, list);
+        for (int i = 0; i < count; i ++) // center each glyph in its cell
+        {
+          glyvector.setGlyphPosition(i, new Point2D.Float(((i
+            * lay.horizStep) + GRID_WIDTH + TEXT_MARGIN + lay.cellOffset[start
+            + i]), 0));
+        }
+        if (lay.rowVectors != null) // are vectors saved for this layout?
+          lay.rowVectors[row] = glyvector; // yes, save for next time
+      }
+      gr2d.drawGlyphVector(glyvector, PANEL_MARGIN, ((row * lay.vertiStep)
+        + PANEL_MARGIN + GRID_WIDTH + TEXT_MARGIN + lay.lineAscent));
+    }
+  } // end of paintGridRows() method
+
+  void rowVectorsCheck(FontRenderContext render)
+  {
+    if ((rowVectors == null) || (rowVectors.length != (panelRows + 1))
+      || (render.equals(rowRender) == false)
+      || (((cornerIndex - rowCorner) % panelColumns) != 0))
+    {                             // are old vectors useless?
+      rowVectors = new GlyphVector[panelRows + 1]; // include partial next row
+      rowCorner = cornerIndex;
+      rowRender = render;
+    }
+    else if (rowCorner != cornerIndex) // has the grid scrolled?
+    {
+      int shift = (cornerIndex - rowCorner) / panelColumns; // rows scrolled
+      GlyphVector[] moved = new GlyphVector[rowVectors.length];
+      for (int i = 0; i < moved.length; i ++) // keep rows that are visible
+      {
+        int old = i + shift;      // index of this row before scroll
+        if ((old >= 0) && (old < rowVectors.length))
+          moved[i] = rowVectors[old];
+      }
+      rowVectors = moved;
+      rowCorner = cornerIndex;
+    }
+  } // end of rowVectorsCheck() method
+
+
+/*
+  paintStrip() method
+
+  Called on the prefetch thread with a layout made for that thread, never for
+  the grid on the screen.  Draw one horizontal strip of <rows> rows, starting
+  at grid row <strip * rows>, with the top of the strip at y = 0.  The row
+  above the strip is included (but clipped) so that glyphs reaching down into
+  the strip aren't lost.
+*/
+  static void paintStrip(Graphics2D gr2d, CharMap4Layout lay, int strip,
+    int rows)
+  {
+    int top = strip * rows;       // first grid row in this strip
+    int above = (top > 0) ? 1 : 0; // one more row above, if there is one
+
+    CharMap4Layout view = new CharMap4Layout(lay, ((top - above)
+      * lay.panelColumns), (rows + above)); // pretend strip fills the panel
+    Rectangle clip = new Rectangle(0, (PANEL_MARGIN + (above
+      * lay.vertiStep)), lay.panelWidth, (rows * lay.vertiStep));
+                                  // strip in pretend panel coordinates
+    gr2d.translate(0, (- clip.y)); // move top of strip to top of image
+    gr2d.clip(clip);
+    gr2d.setColor(PANEL_COLOR);   // clear strip to background color
+    gr2d.fillRect(clip.x, clip.y, clip.width, clip.height);
+    paintGridArea(gr2d, gr2d.getFontRenderContext(), clip, view);
+  }
+
+
+/*
+  prefetchDraw() and prefetchRedraw() methods
+
+  The prefetch thread draws with its own layout (see CharMap4Layout), which
+  has its own centering offsets and no tile cache or saved glyph vectors, so
+  that nothing it uses is changed by the event thread.  Highlighted cells and
+  the margins outside the strips aren't in the pre-drawn strips, and are drawn
+  on top with the layout for this paint.
+*/
+  void prefetchDraw(Graphics2D gr2d, BufferedImage image, int row)
+  {
+    int y = (row * vertiStep) + PANEL_MARGIN; // top of strip in panel
+    gr2d.drawImage(image, 0, y, panelWidth, (y + ((panelRows + 1)
+      * vertiStep)), 0, 0, image.getWidth(), image.getHeight(), null);
+  }
+
+  void prefetchRedraw(Graphics2D gr2d, FontRenderContext render,
+    Rectangle clip, CharMap4Layout lay, Rectangle area)
+  {
+    if (area == null)             // is there an area to redraw?
+      return;                     // no, nothing to do
+    area = area.intersection(clip); // only what needs to be redrawn
+    if (area.isEmpty())           // is the area in the damaged area?
+      return;                     // no, nothing to redraw
+
+    Graphics2D areaGraphics = (Graphics2D) gr2d.create(); // separate clip
+    areaGraphics.clip(area);
+    areaGraphics.setColor(PANEL_COLOR); // clear area to background color
+    areaGraphics.fillRect(area.x, area.y, area.width, area.height);
+    paintGridArea(areaGraphics, render, area, lay); // then draw as usual
+    areaGraphics.dispose();
+  }
+
+
+/*
+  cellRectangle() and repaintCell() methods
+
+  Return the rectangle for one cell, including its grid lines, or <null> if
+  the cell isn't defined or visible.  Mark one cell as needing to be
+  repainted.  Swing combines these requests with any others before calling
+  paint.
+*/
+  Rectangle cellRectangle(int index)
+  {
+    if ((index < cornerIndex) || (index >= cellCount)) // not visible, defined?
+      return(null);               // no rectangle for this cell
+
+    int x = (((index - cornerIndex) % panelColumns) * horizStep) + PANEL_MARGIN;
+    int y = (((index - cornerIndex) / panelColumns) * vertiStep) + PANEL_MARGIN;
+    return(new Rectangle(x, y, (horizStep + GRID_WIDTH), (vertiStep
+      + GRID_WIDTH)));
+  }
+
+  void repaintCell(int index)
+  {
+    Rectangle cell = cellRectangle(index); // may be <null>
+    if (cell != null)             // is the cell defined and visible?
+      this.repaint(cell);         // yes, mark it as needing to be repainted
+  }
+
+
+/*
+  paintGridText() method
+
+  Draw the character or glyph for one cell, without any background.  The
+  given coordinates are for the top-left corner inside the cell's grid lines,
+  which may be in the panel or in a cached tile.
+*/
+  static void paintGridText(Graphics2D gr2d, FontRenderContext render,
+    CharMap4Layout lay, int index, int x, int y)
+  {
+    gr2d.setColor((index == lay.clickIndex) ? PANEL_COLOR : TEXT_COLOR);
+    if (lay.glyphMode)            // are we displaying raw glyphs?
+    {
+      int[] list = new int[1];    // need a list for createGlyphVector()
+      list[0] = lay.cellGlyph[index]; // only value in list is the glyph index
+      GlyphVector glyvector = lay.panelFont.createGlyphVector(render, list);
+      gr2d.drawGlyphVector(glyvector, (x + TEXT_MARGIN
+        + lay.cellOffset[index]), (y + TEXT_MARGIN + lay.lineAscent));
+    }
+    else                          // no, displaying standard characters
+    {
+      int ch = lay.cellChar[index]; // get the character we want to display
+      gr2d.setFont(lay.panelFont); // set the correct font
+      gr2d.drawString(CharMap4.charToString(ch), (x + TEXT_MARGIN
+        + lay.cellOffset[index]), (y + TEXT_MARGIN + lay.lineAscent));
+    }
+  } // end of paintGridText() method
+
+
+/*
+  scanFinished() method
+
+  Called on the event thread when a background scan has enumerated all
+  characters and glyphs in a font.  Results from a cancelled or replaced scan
+  are ignored, because the user has already chosen some other font.
+*/
+  void scanFinished(CharMap4Scan scan)
+  {
+    if (scan != scanner)          // is this the scan that we are waiting for?
+      return;                     // no, results are for a stale font
+
+    scanner = null;               // there is no longer a scan in progress
+    scanInstall(scan);            // use the new characters and glyphs
+    this.repaint();               // mark ourselves as needing to be repainted
+  }
+
+
+/*
+  scanInstall() method
+
+  Take the character and glyph arrays from a finished scan, which may be new or
+  may come from the cache.  The arrays are shared, and never changed by us.
+*/
+  void scanInstall(CharMap4Scan scan)
+  {
+    charChar = scan.charChar;     // take references to the finished arrays
+    charCount = scan.charCount;
+    charGlyph = scan.charGlyph;
+    glyphChar = scan.glyphChar;
+    glyphCount = scan.glyphCount;
+    glyphGlyph = scan.glyphGlyph;
+    prefetchLayout = null;        // pre-drawn pages may be different
+    rowVectors = null;            // glyph vectors for rows may be different
+    captionClear();               // mouse captions may be different
+    scanMethod = scan.method;
+    shareChar = scan.shareChar;
+    shareStart = scan.shareStart;
+
+    CharMap4.statusDialog.setText(CharMap4.formatComma.format(charCount)
+      + " characters with " + CharMap4.formatComma.format(glyphCount)
+      + " glyphs (" + scanMethod + ")"); // subvert "mouse caption" for trivia
+
+  } // end of scanInstall() method
+
+
+/*
+  scanProgress() method
+
+  Take the results so far from a scan that is still running.  The scan's
+  arrays are only appended past the count that it gives us, so we can share
+  them.  Do nothing if there is nothing new since the last time we were called,
+  so that mouse captions in the status line aren't replaced by every repaint.
+*/
+  void scanProgress(CharMap4Scan scan)
+  {
+    synchronized (scan)           // scan thread may be changing these
+    {
+      if ((scan.partGlyphChar == null) || (scan.partGlyphChar == glyphChar))
+        return;                   // no results yet, or nothing new
+      charChar = scan.partChar;   // take references to the partial arrays
+      charCount = scan.partCount;
+      charGlyph = scan.partGlyph;
+      glyphChar = scan.partGlyphChar;
+      glyphCount = scan.partGlyphChar.length;
+      glyphGlyph = scan.partGlyphGlyph;
+    }
+    prefetchLayout = null;        // pre-drawn pages may be different
+    rowVectors = null;            // glyph vectors for rows may be different
+    captionClear();               // mouse captions may be different
+    CharMap4.statusDialog.setText("Scanning font ... "
+      + CharMap4.formatComma.format(charCount) + " characters so far ("
+      + scan.method + ")");       // subvert "mouse caption" for progress
+
+  } // end of scanProgress() method
+
+
+/*
+  scrollApply() method
+
+  Convert the scroll bar's current row position to a starting cell index, and
+  repaint if the drawing position has changed.
+*/
+  void scrollApply()
+  {
+    if (panelFont != null)        // are we ready to handle this yet?
+    {
+      int scroll = CharMap4.gridScroll.getValue(); // scroll bar row position
+      int newCorner = scroll * panelColumns; // convert rows to characters
+      if (newCorner != cornerIndex) // has drawing position truly changed?
+      {
+        cornerIndex = newCorner;  // yes, remember new starting position
+        scrollApplied ++;         // count positions that we displayed
+        this.repaint();           // mark ourselves as needing to be repainted
+      }
+    }
+  } // end of scrollApply() method
+
+
+/*
+  scrollReport() method
+
+  Return a summary of how many scroll positions were shown or skipped.
+*/
+  String scrollReport()
+  {
+    return("Scroll bar moved to " + CharMap4.formatComma.format(scrollApplied)
+      + " positions, and " + CharMap4.formatComma.format(scrollDropped)
+      + " positions were skipped in between.");
+  }
+
+
+/*
+  stateChanged() method
+
+  Currently only used for the vertical scroll bar.  This method gets called
+  often, perhaps too often: keyboard repeat, mouse wheels, and trackpads can
+  move the scroll bar many times between screen updates.  The first change is
+  shown immediately, then later changes are collected into frames of about
+  <SCROLL_FRAME> milliseconds, and only the last position in each frame is
+  shown.  Positions that were replaced before being shown are counted.
+*/
+  public void stateChanged(ChangeEvent event)
+  {
+    if (scrollTimer.isRunning())  // are we in the middle of a frame?
+    {
+      if (scrollPending)          // yes, was there already a newer position?
+        scrollDropped ++;         // yes, and it will never be shown
+      scrollPending = true;       // show latest position at end of frame
+    }
+    else
+    {
+      scrollApply();              // first change is shown without delay
+      scrollTimer.restart();      // then wait one frame for more changes
+    }
+  } // end of stateChanged() method
+
+} // end of CharMap4Grid class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  CharMap4Layout class
+
+  A snapshot of everything that the static paintGrid*() methods in
+  CharMap4Grid need to draw cells: the font and its metrics, the size of each
+  cell, which cells are visible and highlighted, and the character and glyph
+  arrays (which never change once a font has been scanned).  The grid makes a
+  new layout for each paint on the event thread.  The prefetch thread gets a
+  layout of its own, with no highlighted cells, no tile cache, no saved glyph
+  vectors, and a private copy of the centering offsets.  Fields never change
+  after construction.  The offsets and saved glyph vectors are filled in as
+  cells are drawn, by the one thread that uses that layout.
+*/
+
+class CharMap4Layout
+{
+  /* instance variables */
+
+  final CharMap4Atlas atlas;      // cached images of characters, or <null>
+  final int[] cellChar;           // unique character number, or -1
+  final int cellCount;            // number of displayed characters or glyphs
+  final int[] cellGlyph;          // unique glyph number, or -1
+  final short[] cellOffset;       // pixels to center in cell, or <NO_OFFSET>
+  final int clickIndex;           // cell index of clicked character
+  final int cornerIndex;          // cell index of top-left corner
+  final FontMetrics fontData;     // information about current display font
+  final boolean glyphMode;        // true if cells are glyphs, not characters
+  final int horizStep;            // horizontal offset from one cell to next
+  final int hoverIndex;           // cell index of mouse over character
+  final int lineAscent;           // number of pixels above baseline
+  final int maxWidth;             // maximum pixel width of all characters
+  final int panelColumns;         // number of complete text columns displayed
+  final Font panelFont;           // font for drawing text on the panel
+  final int panelRows;            // number of complete lines (rows) displayed
+  final int panelWidth;           // panel width in pixels
+  final GlyphVector[] rowVectors; // saved vectors by visible row, or <null>
+  final int vertiStep;            // vertical offset from one cell to next
+
+  /* constructors */
+
+  public CharMap4Layout(CharMap4Grid grid, boolean eventThread)
+  {
+    this.atlas = eventThread ? grid.atlas : null;
+    this.cellChar = grid.cellChar;
+    this.cellCount = grid.cellCount;
+    this.cellGlyph = grid.cellGlyph;
+    this.cellOffset = (eventThread || (grid.cellOffset == null))
+      ? grid.cellOffset : grid.cellOffset.clone();
+    this.clickIndex = eventThread ? grid.clickIndex : CharMap4Grid.NO_MOUSE;
+    this.cornerIndex = grid.cornerIndex;
+    this.fontData = grid.fontData;
+    this.glyphMode = grid.glyphMode;
+    this.horizStep = grid.horizStep;
+    this.hoverIndex = eventThread ? grid.hoverIndex : CharMap4Grid.NO_MOUSE;
+    this.lineAscent = grid.lineAscent;
+    this.maxWidth = grid.maxWidth;
+    this.panelColumns = grid.panelColumns;
+    this.panelFont = grid.panelFont;
+    this.panelRows = grid.panelRows;
+    this.panelWidth = grid.panelWidth;
+    this.rowVectors = (eventThread && grid.glyphMode) ? grid.rowVectors
+      : null;
+    this.vertiStep = grid.vertiStep;
+  }
+
+  public CharMap4Layout(CharMap4Layout other, int cornerIndex, int panelRows)
+  {
+    this.atlas = other.atlas;     // same as <other> except visible rows
+    this.cellChar = other.cellChar;
+    this.cellCount = other.cellCount;
+    this.cellGlyph = other.cellGlyph;
+    this.cellOffset = other.cellOffset;
+    this.clickIndex = other.clickIndex;
+    this.cornerIndex = cornerIndex;
+    this.fontData = other.fontData;
+    this.glyphMode = other.glyphMode;
+    this.horizStep = other.horizStep;
+    this.hoverIndex = other.hoverIndex;
+    this.lineAscent = other.lineAscent;
+    this.maxWidth = other.maxWidth;
+    this.panelColumns = other.panelColumns;
+    this.panelFont = other.panelFont;
+    this.panelRows = panelRows;
+    this.panelWidth = other.panelWidth;
+    this.rowVectors = null;       // saved vectors are for other visible rows
+    this.vertiStep = other.vertiStep;
+  }
+
+} // end of CharMap4Layout class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  CharMap4Atlas class
+
+  A cache of small images ("tiles") for characters drawn in the grid, all kept
+  in one shared image.  Copying a tile is much faster than rasterizing a
+  glyph, which matters for complex fonts, and the grid is redrawn often by
+  scrolling and mouse movement.  Tiles have a transparent background, so the
+  grid can draw cell backgrounds in any color.  When the cache is full, the
+  least recently used tile is replaced.  All tiles are thrown away when the
+  font, cell size, or display scaling changes.  There is a fixed memory budget;
+  if the tiles would be too big to keep a reasonable number of them, the cache
+  is not used and the grid draws characters directly.  Characters that draw
+  too far outside their cells are also drawn directly, and remembered so that
+  they aren't measured again.  Raw glyphs don't use
+  tiles: glyph mode draws a whole row with one saved glyph vector (see
+  CharMap4Grid.paintGridRows()), which is faster.  Only the event thread has a
+  tile cache; the prefetch thread draws directly.
+
+  The caller chooses a key for each tile, and draws the tile with the grid's
+  own code when find() doesn't have it.  Methods are only called on the event
+  thread.
+*/
+
+class CharMap4Atlas
+{
+  /* constants */
+
+  static final int ATLAS_BUDGET = 16 * 1024 * 1024; // most bytes for tiles
+  static final int ATLAS_WIDTH = 2048; // most pixels across shared image
+  static final int MIN_TILES = 64; // fewer tiles than this isn't worth it
+  static final int NO_TILE = -1;  // find(): caller should draw a new tile
+  static final int TOO_BIG = -2;  // find(): caller should draw directly
+
+  /* instance variables */
+
+  int columns;                    // number of tiles across shared image
+  Font font;                      // font used for all tiles, or <null>
+  long hits, misses;              // how often tiles were found or drawn
+  RenderingHints hints;           // rendering hints copied from panel
+  BufferedImage image;            // shared image with all tiles, or <null>
+  int pixelHeight, pixelWidth;    // size of each tile in device pixels
+  double scaleX, scaleY;          // device pixels per user coordinate
+  int slotCount;                  // most tiles that fit in memory budget
+  LinkedHashMap<Long, Integer> slotMap; // key to tile, least recent first
+  int slotsUsed;                  // number of tiles assigned so far
+  HashSet<Long> tooBig;           // keys for images that don't fit in a tile
+  Graphics2D tile;                // for drawing into last claimed tile
+  int tileHeight, tileWidth;      // size of each tile in user coordinates
+  boolean usable;                 // true if tiles should be used
+
+  /* constructor */
+
+  public CharMap4Atlas()
+  {
+    font = null;                  // nothing is prepared yet
+    hits = misses = 0;            // totals are for whole program run
+    image = null;
+    slotMap = new LinkedHashMap<Long, Integer>(256, 0.75f, true); // for LRU
+    tile = null;
+    tileHeight = tileWidth = -1;
+    tooBig = new HashSet<Long>(); // no images refused yet
+    usable = false;               // don't use until prepare() is called
+  }
+
+
+/*
+  claim() method
+
+  Assign a tile to a new key, replacing the least recently used tile if all
+  tiles have been assigned.  The tile is cleared to transparent, and <tile> is
+  set up for drawing into it with the tile's top-left corner as the origin.
+  Return the tile number.
+*/
+  int claim(long key)
+  {
+    int slot;                     // tile number that we assign
+
+    if (image == null)            // has shared image been created yet?
+    {
+      image = new BufferedImage((columns * pixelWidth), (((slotCount + columns
+        - 1) / columns) * pixelHeight), BufferedImage.TYPE_INT_ARGB_PRE);
+      tile = image.createGraphics(); // reuse for drawing every tile
+      tile.setRenderingHints(hints); // same quality as panel
+    }
+
+    if (slotsUsed < slotCount)    // is there a tile that was never used?
+      slot = slotsUsed ++;        // yes, take next free tile
+    else                          // no, replace least recently used tile
+    {
+      Iterator<Map.Entry<Long, Integer>> iterator = slotMap.entrySet()
+        .iterator();
+      Map.Entry<Long, Integer> entry = iterator.next(); // oldest entry first
+      slot = entry.getValue().intValue();
+      iterator.remove();          // old key no longer has a tile
+    }
+    slotMap.put(Long.valueOf(key), Integer.valueOf(slot));
+
+    /* Clear the tile, then limit drawing to the tile, in user coordinates. */
+
+    int x = (slot % columns) * pixelWidth; // top-left corner in device pixels
+    int y = (slot / columns) * pixelHeight;
+    tile.setTransform(new AffineTransform());
+    tile.setClip(null);
+    tile.setComposite(AlphaComposite.Clear);
+    tile.fillRect(x, y, pixelWidth, pixelHeight);
+    tile.setComposite(AlphaComposite.SrcOver);
+    tile.setTransform(new AffineTransform(scaleX, 0, 0, scaleY, x, y));
+    tile.setClip(0, 0, tileWidth, tileHeight);
+    return(slot);
+
+  } // end of claim() method
+
+
+/*
+  draw() method
+
+  Copy one tile into the caller's graphics context, with the tile's top-left
+  corner at the given user coordinates.
+*/
+  void draw(Graphics2D gr2d, int slot, int x, int y)
+  {
+    int sx = (slot % columns) * pixelWidth; // top-left corner in device pixels
+    int sy = (slot / columns) * pixelHeight;
+    gr2d.drawImage(image, x, y, (x + tileWidth), (y + tileHeight), sx, sy,
+      (sx + pixelWidth), (sy + pixelHeight), null);
+  }
+
+
+/*
+  find() method
+
+  Return the tile number for a key, NO_TILE if the key doesn't have a tile, or
+  TOO_BIG if refuse() was called for the key.
+*/
+  int find(long key)
+  {
+    Long object = Long.valueOf(key); // key as an object, for lookups
+    Integer slot = slotMap.get(object); // may be <null>
+    if (slot == null)             // was there a tile for this key?
+    {
+      if (tooBig.contains(object)) // is the image too big for a tile?
+        return(TOO_BIG);          // yes, caller must draw directly
+      misses ++;                  // no, caller must draw a new tile
+      return(NO_TILE);
+    }
+    hits ++;                      // yes, caller can copy existing tile
+    return(slot.intValue());
+  }
+
+
+/*
+  prepare() method
+
+  Called each time the grid is painted, before any tiles are used.  If the
+  font, cell size, or display scaling has changed since the last time, then
+  throw away all tiles and decide whether the tiles are small enough to use.
+*/
+  void prepare(Graphics2D gr2d, Font font, int width, int height)
+  {
+    AffineTransform transform = gr2d.getTransform(); // display scaling
+    if (font.equals(this.font) && (width == tileWidth)
+      && (height == tileHeight) && (transform.getScaleX() == scaleX)
+      && (transform.getScaleY() == scaleY))
+    {
+      return;                     // nothing has changed, keep all tiles
+    }
+
+    this.font = font;             // save new font and sizes for comparison
+    hints = gr2d.getRenderingHints();
+    scaleX = transform.getScaleX();
+    scaleY = transform.getScaleY();
+    tileHeight = height;
+    tileWidth = width;
+
+    if (tile != null)             // release old drawing context, if any
+      tile.dispose();
+    image = null;                 // shared image created when first needed
+    slotMap.clear();              // all old keys are now useless
+    slotsUsed = 0;
+    tile = null;
+    tooBig.clear();               // sizes may be different now
+
+    /* Tiles are only used for simple scaling, and if enough of them fit in our
+    memory budget to hold at least a page or two of cells. */
+
+    pixelHeight = Math.max(1, (int) Math.ceil(height * scaleY));
+    pixelWidth = Math.max(1, (int) Math.ceil(width * scaleX));
+    columns = Math.max(1, (ATLAS_WIDTH / pixelWidth));
+    slotCount = ATLAS_BUDGET / (4 * pixelHeight * pixelWidth); // ARGB pixels
+    usable = (slotCount >= MIN_TILES) && ((transform.getType()
+      & (AffineTransform.TYPE_FLIP | AffineTransform.TYPE_MASK_ROTATION
+      | AffineTransform.TYPE_GENERAL_TRANSFORM)) == 0);
+
+  } // end of prepare() method
+
+
+/*
+  refuse() method
+
+  Remember that the image for a key doesn't fit in a tile, so that the caller
+  doesn't have to measure it again.  Return TOO_BIG, like find() will.
+*/
+  int refuse(long key)
+  {
+    tooBig.add(Long.valueOf(key));
+    return(TOO_BIG);
+  }
+
+
+/*
+  report() method
+
+  Return a one-line summary of how well the cache is working, for the user.
+*/
+  String report()
+  {
+    if ((font != null) && (usable == false)) // was the cache turned off?
+      return("Character tile cache is not used for cells this big.");
+    return("Character tile cache has "
+      + CharMap4.formatComma.format(slotsUsed) + " of "
+      + CharMap4.formatComma.format(slotCount) + " tiles, with "
+      + CharMap4.formatComma.format(hits) + " hits and "
+      + CharMap4.formatComma.format(misses) + " misses"
+      + (tooBig.isEmpty() ? "" : (", and "
+      + CharMap4.formatComma.format(tooBig.size())
+      + " characters too big for tiles")) + ".");
+  }
+
+} // end of CharMap4Atlas class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  CharMap4Prefetch class
+
+  A background thread that draws pages above and below the visible grid ahead
+  of time, so that scrolling only needs to copy images.  The grid is divided
+  into horizontal "strips" that are one page high (including the partial next
+  row), numbered from the top of the grid.  The visible grid always lies in
+  one or two strips.  We keep at most four strips: the visible ones, and one
+  above and one below.  Strips are drawn with a private layout of the grid's
+  drawing information (see CharMap4Layout), and all strips are thrown away
+  when the layout changes.  The memory budget is big enough for four strips
+  as large as the screen (plus the partial next row), but no more than a
+  quarter of the Java heap.  If
+  four strips don't fit, then the strip above is dropped first, then the strip
+  below.  Only if the visible strips don't fit is nothing drawn ahead of time.
+
+  The event thread calls want(), get(), and countUsed() during each paint.
+  Everything else runs on our own thread.
+*/
+
+class CharMap4Prefetch implements Runnable
+{
+  /* constants */
+
+  static final int MAX_STRIPS = 4; // two visible, one above, one below
+  static final int PREFETCH_BUDGET = 64 * 1024 * 1024; // least bytes budgeted
+
+  /* instance variables */
+
+  int drawn;                      // number of strips drawn, for the user
+  int firstWanted, lastWanted;    // strips for the visible grid
+  RenderingHints hints;           // rendering hints copied from panel
+  int highWanted, lowWanted;      // all strips that we should keep
+  BufferedImage[] images;         // pre-drawn strips, or <null>
+  int[] numbers;                  // strip number for each image, or -1
+  double scaleX, scaleY;          // device pixels per user coordinate
+  CharMap4Layout source;          // layout used for drawing, or <null>
+  int stripCount;                 // most strips that fit in memory budget
+  int stripRows;                  // number of rows in each strip
+  Thread thread;                  // our drawing thread, once started
+  int used;                       // paints done from strips, for the user
+
+  /* constructor */
+
+  public CharMap4Prefetch()
+  {
+    drawn = used = 0;             // totals are for whole program run
+    highWanted = -1;              // nothing wanted yet
+    images = new BufferedImage[MAX_STRIPS];
+    lowWanted = 0;
+    numbers = new int[MAX_STRIPS];
+    Arrays.fill(numbers, -1);     // no strips drawn yet
+    source = null;
+    stripCount = 0;
+    thread = null;                // don't start thread until needed
+  }
+
+
+/*
+  countUsed() method
+
+  Count one paint that was done from pre-drawn strips, for report().
+*/
+  synchronized void countUsed()
+  {
+    used ++;
+  }
+
+
+/*
+  get() method
+
+  Return the image for one strip, or <null> if it hasn't been drawn yet.
+*/
+  synchronized BufferedImage get(int number)
+  {
+    for (int i = 0; i < MAX_STRIPS; i ++)
+      if (numbers[i] == number) return(images[i]);
+    return(null);
+  }
+
+
+/*
+  report() method
+
+  Return a one-line summary of how well prefetching is working, for the user.
+*/
+  synchronized String report()
+  {
+    return("Page prefetch has drawn " + CharMap4.formatComma.format(drawn)
+      + " strips, and " + CharMap4.formatComma.format(used)
+      + " paints used them.");
+  }
+
+
+/*
+  run() method
+
+  Our drawing thread.  Wait until some wanted strip hasn't been drawn, draw it
+  without holding any locks, then keep it if it's still wanted.  Visible
+  strips are drawn first, then the one below (scrolling down is more common),
+  then the one above.
+*/
+  public void run()
+  {
+    while (true)
+    {
+      int number;                 // strip number that we will draw
+      double sx, sy;              // scaling for this strip
+      CharMap4Layout layout;      // drawing information for this strip
+      RenderingHints quality;     // rendering hints for this strip
+      int rows;                   // number of rows in this strip
+
+      synchronized (this)
+      {
+        while ((number = nextStrip()) < 0) // nothing to do?
+        {
+          try { wait(); }         // yes, sleep until want() calls notify
+          catch (InterruptedException ie) { return; }
+        }
+        layout = source;          // take copies while we hold the lock
+        quality = hints;
+        rows = stripRows;
+        sx = scaleX;
+        sy = scaleY;
+      }
+
+      BufferedImage image = new BufferedImage(Math.max(1, (int) Math.ceil(
+        layout.panelWidth * sx)), Math.max(1, (int) Math.ceil(rows
+        * layout.vertiStep * sy)), BufferedImage.TYPE_INT_RGB);
+      Graphics2D gr2d = image.createGraphics();
+      gr2d.setRenderingHints(quality);
+      gr2d.scale(sx, sy);         // same device pixels as the panel
+      CharMap4Grid.paintStrip(gr2d, layout, number, rows);
+      gr2d.dispose();
+
+      synchronized (this)
+      {
+        if ((layout == source) && (number >= lowWanted)
+          && (number <= highWanted)) // is this strip still wanted?
+        {
+          for (int i = 0; i < MAX_STRIPS; i ++) // find an unused slot
+          {
+            if ((numbers[i] < lowWanted) || (numbers[i] > highWanted))
+            {
+              images[i] = image;
+              numbers[i] = number;
+              drawn ++;
+              break;
+            }
+          }
+        }
+      }
+    }
+  } // end of run() method
+
+  int nextStrip()                 // called while holding lock
+  {
+    if (source == null)           // is there anything to draw?
+      return(-1);
+    int[] order = { firstWanted, lastWanted, (lastWanted + 1),
+      (firstWanted - 1) };        // visible first, then below, then above
+    for (int i = 0; i < order.length; i ++)
+    {
+      if ((order[i] >= lowWanted) && (order[i] <= highWanted)
+        && (get(order[i]) == null))
+      {
+        return(order[i]);
+      }
+    }
+    return(-1);
+  }
+
+
+/*
+  want() method
+
+  Called on the event thread for each paint, with the strips for the visible
+  grid (<first> and <last>, which may be the same) and the range of strips
+  that we should keep (<low> to <high>).  Strips outside that range are thrown
+  away, and so are the strips above and below if they don't fit in our memory
+  budget.  Return false if strips can't be used for this grid, because even
+  the visible strips would be too big, or the display has more than simple
+  scaling.
+*/
+  synchronized boolean want(CharMap4Layout layout, Graphics2D gr2d,
+    int first, int last, int low, int high)
+  {
+    AffineTransform transform = gr2d.getTransform(); // display scaling
+    if ((layout != source) || (transform.getScaleX() != scaleX)
+      || (transform.getScaleY() != scaleY)) // has drawing information changed?
+    {
+      Arrays.fill(images, null);  // yes, all old strips are useless
+      Arrays.fill(numbers, -1);
+      hints = gr2d.getRenderingHints();
+      scaleX = transform.getScaleX();
+      scaleY = transform.getScaleY();
+      source = layout;
+      stripRows = layout.panelRows + 1; // include partial next row
+
+      Rectangle screen = gr2d.getDeviceConfiguration().getBounds();
+      double most = 4.0 * Math.ceil(screen.getWidth() * scaleX)
+        * Math.ceil((screen.getHeight() + layout.vertiStep) * scaleY);
+                                  // screen plus partial row, as RGB pixels
+      double budget = Math.min((Runtime.getRuntime().maxMemory() / 4.0),
+        Math.max(PREFETCH_BUDGET, (MAX_STRIPS * most))); // for all strips
+      double bytes = 4.0 * Math.ceil(layout.panelWidth * scaleX)
+        * Math.ceil(stripRows * layout.vertiStep * scaleY); // one strip
+      stripCount = (int) Math.min(MAX_STRIPS, Math.floor(budget / bytes));
+    }
+
+    if ((stripCount < (last - first + 1)) || ((transform.getType()
+      & (AffineTransform.TYPE_FLIP | AffineTransform.TYPE_MASK_ROTATION
+      | AffineTransform.TYPE_GENERAL_TRANSFORM)) != 0))
+    {
+      highWanted = -1;            // don't draw anything
+      lowWanted = 0;
+      return(false);
+    }
+
+    firstWanted = first;          // remember what the event thread wants
+    lastWanted = last;
+    highWanted = ((last - first + 1) < stripCount) ? high : last;
+    lowWanted = ((highWanted - first + 1) < stripCount) ? low : first;
+                                  // strip below is more useful than above
+    for (int i = 0; i < MAX_STRIPS; i ++) // forget strips no longer wanted
+    {
+      if ((numbers[i] < lowWanted) || (numbers[i] > highWanted))
+      {
+        images[i] = null;
+        numbers[i] = -1;
+      }
+    }
+
+    if (thread == null)           // has our drawing thread been started?
+    {
+      thread = new Thread(this, "pagePrefetch");
+      thread.setDaemon(true);     // don't keep program running just for us
+      thread.setPriority(Thread.MIN_PRIORITY); // user input is more important
+      thread.start();
+    }
+    notifyAll();                  // wake up drawing thread, if waiting
+    return(true);
+
+  } // end of want() method
+
+} // end of CharMap4Prefetch class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  CharMap4Scan class
+
+  This class enumerates all characters and glyphs in one font, as a separate
+  thread, so that the graphical interface doesn't freeze for large fonts.  The
+  results are handed back to the grid panel on the event thread.  A scan may be
+  cancelled at any time; a cancelled scan never reports back.
+*/
+
+class CharMap4Scan implements Runnable
+{
+  /* constants */
+
+  static final int CACHE_SIZE = 8; // number of finished scans that we keep
+  static final int DISK_MAGIC = 0x434D3446; // "CM4F" at start of cache file
+  static final int DISK_VERSION = 3; // increment if cache file format changes
+  static final int WAVE_FIRST = 256; // positions probed before first results
+
+  /* When we must probe a font one character at a time, there is no point in
+  probing character numbers that have never been assigned by Unicode.  The
+  following table has pairs of first and last character numbers for assigned
+  Unicode blocks, with adjacent blocks joined together.  Surrogates (0xD800 to
+  0xDFFF) and the supplementary private use planes (0xF0000 to 0x10FFFF) have
+  been removed.  Use the -p option to probe everything.
+
+  The following table is mechanically generated from UNIDATA/Blocks.txt by the
+  unpublished CharMapParse1 Java application.  Do not edit this table manually.
+
+  Last updated from the 2021-01-22 UNIDATA/Blocks.txt file (14.0.0). */
+
+  static final int[] ASSIGNED_RANGES = {
+    0x0000, 0x2FDF, 0x2FF0, 0xD7FF, 0xE000, 0x101FF,
+    0x10280, 0x103DF, 0x10400, 0x105BF, 0x10600, 0x107BF,
+    0x10800, 0x108AF, 0x108E0, 0x1093F, 0x10980, 0x10A9F,
+    0x10AC0, 0x10BAF, 0x10C00, 0x10C4F, 0x10C80, 0x10D3F,
+    0x10E60, 0x10EBF, 0x10F00, 0x1124F, 0x11280, 0x1137F,
+    0x11400, 0x114DF, 0x11580, 0x116CF, 0x11700, 0x1174F,
+    0x11800, 0x1184F, 0x118A0, 0x1195F, 0x119A0, 0x11AFF,
+    0x11C00, 0x11CBF, 0x11D00, 0x11DAF, 0x11EE0, 0x11EFF,
+    0x11FB0, 0x1254F, 0x12F90, 0x1343F, 0x14400, 0x1467F,
+    0x16800, 0x16B8F, 0x16E40, 0x16E9F, 0x16F00, 0x16F9F,
+    0x16FE0, 0x18D7F, 0x1AFF0, 0x1B2FF, 0x1BC00, 0x1BCAF,
+    0x1CF00, 0x1CFCF, 0x1D000, 0x1D24F, 0x1D2E0, 0x1D37F,
+    0x1D400, 0x1DAAF, 0x1DF00, 0x1E02F, 0x1E100, 0x1E14F,
+    0x1E290, 0x1E2FF, 0x1E7E0, 0x1E8DF, 0x1E900, 0x1E95F,
+    0x1EC70, 0x1ECBF, 0x1ED00, 0x1ED4F, 0x1EE00, 0x1EEFF,
+    0x1F000, 0x1FBFF, 0x20000, 0x2A6DF, 0x2A700, 0x2EBEF,
+    0x2F800, 0x2FA1F, 0x30000, 0x3134F, 0xE0000, 0xE007F,
+    0xE0100, 0xE01EF};
+
+  /* class variables */
+
+  static LinkedHashMap<String, CharMap4Scan> cacheMap
+    = new LinkedHashMap<String, CharMap4Scan>(16, 0.75f, true);
+                                  // finished scans, least recently used first
+
+  /* instance variables */
+
+  volatile boolean cancelFlag;    // true if caller no longer wants results
+  boolean doneFlag;               // true after scan, when reporting to grid
+  Font font;                      // font to be scanned
+  CharMap4Grid grid;              // who gets told about our results
+  String method;                  // how characters were found, for the user
+  int[] rangeList;                // pairs of first, last character to probe
+  int[] rangeStart;               // position of each range in whole scan
+  FontRenderContext render;       // needed for creating glyph vectors
+
+  int[] charChar;                 // same meaning as in CharMap4Grid
+  int charCount;
+  int[] charGlyph;
+
+  int[] glyphChar;
+  int glyphCount;
+  int[] glyphGlyph;
+
+  int[] shareChar;                // characters for each glyph, packed together
+  int[] shareStart;               // index of each glyph's list in <shareChar>
+
+  int[] partChar;                 // results so far, while scan is running
+  int partCount;
+  int[] partGlyph;
+  int[] partGlyphChar;
+  int[] partGlyphGlyph;
+
+  /* constructor */
+
+  public CharMap4Scan(CharMap4Grid grid, Font font, FontRenderContext render)
+  {
+    this.cancelFlag = false;      // nobody has cancelled us yet
+    this.doneFlag = false;        // scan hasn't been run yet
+    this.font = font;
+    this.grid = grid;
+    this.method = null;           // don't know how yet
+    this.partChar = this.partGlyph = this.partGlyphChar = this.partGlyphGlyph
+      = null;                     // no results so far
+    this.partCount = 0;
+    this.rangeList = this.rangeStart = null; // no ranges chosen yet
+    this.render = render;
+    this.shareChar = this.shareStart = null; // no lists of characters yet
+  }
+
+  /* cancel() method: tell a running scan to stop */
+
+  void cancel()
+  {
+    cancelFlag = true;            // checked often by the enumeration loop
+  }
+
+  /* run() method: first called on our own thread, then on the event thread */
+
+  public void run()
+  {
+    if (doneFlag)                 // are we back on the event thread?
+      grid.scanFinished(this);    // yes, give results to the grid panel
+    else
+    {
+      if (diskLoad())             // was font saved from an earlier run?
+        method = "font cache, " + method; // yes, tell user where from
+      else
+      {
+        CharMap4Font located = CharMap4Font.find(font); // file, or <null>
+        planScan(located);        // which characters to probe
+        scanFont();               // do the slow enumeration of the font
+        if (cancelFlag == false)  // don't save partial results
+          diskSave(located);      // so that next time will be faster
+      }
+      if (cancelFlag == false)    // only report back if still wanted
+      {
+        shareBuild();             // characters for each glyph, not saved
+        cachePut(this);           // remember results for other point sizes
+        doneFlag = true;          // next call to run() is on event thread
+        SwingUtilities.invokeLater(this);
+      }
+    }
+  }
+
+
+/*
+  cacheGet(), cacheKey(), and cachePut() methods
 
-  The caller wants us to initialize the display, from the beginning.  Flag our
-  class variables so that this will happen when the panel is next redrawn.
+  Finished scans are kept in memory, indexed by font family and style, because
+  the mapping from characters to glyphs is the same for all point sizes.  Only
+  a few fonts are kept, since very large fonts use several megabytes each.
+  Scans with the -p option find more characters, so they have different keys
+  (and different cache files) than regular scans.
 */
-  void clear()
+  static synchronized CharMap4Scan cacheGet(Font font)
   {
-    panelFont = null;             // saved font for drawing text on this panel
-    this.repaint();               // mark ourselves as needing to be repainted
+    return(cacheMap.get(cacheKey(font))); // may be <null>
+  }
+
+  static String cacheKey(Font font)
+  {
+    return(font.getFamily() + "/" + font.getStyle() // ignore point size
+      + (CharMap4.probeAll ? "/all" : "")); // -p option probes everything
   }
 
+  static synchronized void cachePut(CharMap4Scan scan)
+  {
+    cacheMap.put(cacheKey(scan.font), scan); // newest is most recently used
+    if (cacheMap.size() > CACHE_SIZE) // remove least recently used scan
+      cacheMap.remove(cacheMap.keySet().iterator().next());
+  }
 
-/*
-  convertMouse() method
 
-  Convert mouse coordinates to a cell index.  Return <NO_MOUSE> if the mouse is
-  not well-centered on a defined character.
+/*
+  diskFile(), diskLoad(), and diskSave() methods
+
+  Finished scans are also saved as small binary files, one per font, in the
+  folder given by the -k option.  A file is only believed if the font name,
+  number of glyphs, and -p option are unchanged, and if the font file found
+  by the saved scan (if any) still has the same size and date.  These checks
+  are cheap: the font folders are only searched, and the "cmap" table is only
+  read, when the cache file can't be used.  The file name and scan method are
+  saved so that they can be checked, and shown to the user, without that
+  search.  Character numbers are saved as differences from the previous
+  character, which compress well.  Any problem with a cache file is treated as
+  if the file didn't exist; the font is simply scanned again.  This includes
+  counts and numbers that are out of range, since a damaged file must not stop
+  the scan thread.
 */
-  int convertMouse(MouseEvent event)
+  File diskFile()
   {
-    int result;                   // converted cell index or <NO_MOUSE>
+    StringBuffer buffer;          // faster than String for multiple appends
+    char ch;                      // one character from font family name
+    int i;                        // index variable
+    String key;                   // our index key for this font
+    int length;                   // size of font family name in characters
 
-    if (panelFont == null)        // can't do conversion if we haven't painted
-      return(NO_MOUSE);           // tell caller to come back some other time
+    if (CharMap4.cacheFolder == null) // has user disabled the font cache?
+      return(null);               // yes, there is no file name
 
-    int colOff = event.getX() - GRID_WIDTH - PANEL_MARGIN; // known margins
-    int colNum = colOff / horizStep; // convert pixels to column number
-    int colRem = colOff % horizStep; // how far inside cell is the mouse?
-    if ((colNum >= panelColumns) || (colRem < TEXT_MARGIN)
-      || (colRem > (horizStep - GRID_WIDTH - TEXT_MARGIN)))
+    buffer = new StringBuffer();  // allocate empty string buffer for result
+    key = cacheKey(font);         // family and style, but not point size
+    length = key.length();        // number of characters to consider
+    for (i = 0; i < length; i ++) // keep only characters safe in file names
     {
-      return(NO_MOUSE);           // horizontal coordinate is out of range
+      ch = key.charAt(i);         // get one character from family name
+      buffer.append(((ch < 0x80) && Character.isLetterOrDigit(ch)) ? ch
+        : '_');                   // replace anything else with underscore
     }
+    buffer.append('-');           // names may be the same after replacement
+    buffer.append(Integer.toHexString(key.hashCode()));
+    buffer.append(".bin");
+    return(new File(CharMap4.cacheFolder, buffer.toString()));
+  }
 
-    int rowOff = event.getY() - GRID_WIDTH - PANEL_MARGIN; // known margins
-    int rowNum = rowOff / vertiStep; // convert pixels to row number
-    int rowRem = rowOff % vertiStep; // how far inside cell is the mouse?
-    if ((rowRem < TEXT_MARGIN)
-      || (rowRem > (vertiStep - GRID_WIDTH - TEXT_MARGIN)))
+  boolean diskLoad()
+  {
+    File file;                    // our cache file for this font
+    int i;                        // index variable
+    DataInputStream input;        // binary input stream from cache file
+    File located;                 // font file found by saved scan, if any
+    boolean result;               // true if we loaded all arrays
+
+    if (((file = diskFile()) == null) || (file.exists() == false))
+      return(false);              // no font cache, or font not in cache
+
+    input = null;                 // file isn't open yet
+    result = false;               // assume that cache file is unusable
+    try                           // catch specific and general I/O errors
     {
-      return(NO_MOUSE);           // vertical coordinate is out of range
-    }
+      input = new DataInputStream(new BufferedInputStream(new
+        GZIPInputStream(new FileInputStream(file))));
+      if ((input.readInt() == DISK_MAGIC)
+        && (input.readInt() == DISK_VERSION)
+        && input.readUTF().equals(font.getFontName())
+        && (input.readInt() == font.getNumGlyphs())
+        && (input.readBoolean() == CharMap4.probeAll))
+      {
+        String path = input.readUTF(); // empty if font file wasn't found
+        located = (path.length() > 0) ? new File(path) : null;
+        if ((input.readLong() != ((located == null) ? -1 : located.length()))
+          || (input.readLong() != ((located == null) ? -1
+          : located.lastModified())))
+        {
+          throw new IOException("font file has changed");
+        }
+        method = input.readUTF(); // same as set by planScan() when saved
+        int glyphs = Math.max(0, font.getNumGlyphs()); // same as scanFont()
+        charCount = input.readInt(); // number of displayable characters
+        if ((charCount < 0)
+          || (charCount > (CharMap4.MAX_UNICODE - CharMap4.MIN_UNICODE + 1)))
+        {
+          throw new IOException("bad character count");
+        }
+        charChar = new int[charCount]; // list of Unicode character numbers
+        charGlyph = new int[charCount]; // list of internal glyph numbers
+        int ch = 0;               // previous character number
+        for (i = 0; i < charCount; i ++)
+        {
+          int step = input.readInt(); // saved as difference from previous
+          if ((step < 0) || ((i > 0) && (step == 0))) // must be ascending
+            throw new IOException("bad character number");
+          ch += step;             // may overflow, caught by test below
+          if ((ch < CharMap4.MIN_UNICODE) || (ch > CharMap4.MAX_UNICODE))
+            throw new IOException("bad character number");
+          charChar[i] = ch;
+          charGlyph[i] = input.readInt();
+          if ((charGlyph[i] < 0) || (charGlyph[i] >= glyphs))
+            throw new IOException("bad glyph number");
+        }
 
-    result = cornerIndex + (rowNum * panelColumns) + colNum;
-    if (result >= cellCount)      // is the mouse beyond the last character?
-      return(NO_MOUSE);           // character index is out of range
+        glyphCount = input.readInt(); // total number of glyphs in font
+        if (glyphCount != glyphs) // always the same as number in font
+          throw new IOException("bad glyph count");
+        glyphChar = new int[glyphCount];
+        glyphGlyph = new int[glyphCount];
+        for (i = 0; i < glyphCount; i ++)
+        {
+          glyphChar[i] = input.readInt(); // first character, or -1 for none
+          if ((glyphChar[i] < -1) || (glyphChar[i] > CharMap4.MAX_UNICODE))
+            throw new IOException("bad character number");
+          glyphGlyph[i] = i;      // assume that all glyphs map to themselves!
+        }
+        result = true;            // everything was read correctly
+      }
+      input.close();              // try to close input file
+      input = null;
+    }
+    catch (IOException ioe)       // includes end-of-file and bad compression
+    {
+      result = false;             // partial data is no data
+    }
+    catch (RuntimeException re)   // anything else wrong with the file
+    {
+      result = false;
+    }
+    if (input != null)            // still open after an error?
+    {
+      try { input.close(); }      // yes, don't keep the file open
+      catch (IOException ioe) { /* ignore errors while closing */ }
+    }
+    return(result);               // tell caller if we were successful
 
-    return(result);               // give caller a valid character index
+  } // end of diskLoad() method
 
-  } // end of convertMouse() method
+  void diskSave(CharMap4Font located)
+  {
+    File file;                    // our cache file for this font
+    int i;                        // index variable
+    DataOutputStream output;      // binary output stream to cache file
+    File temp;                    // temporary file while writing
 
+    if ((file = diskFile()) == null) // has user disabled the font cache?
+      return;                     // yes, there is nothing to save
 
-/*
-  mouseClicked(), mouseDragged(), ..., mouseReleased() methods
+    /* Write into a temporary file, then rename, so that another copy of this
+    program never sees a partial cache file. */
 
-  These are the mouse click and movement listeners.
-*/
-  public void mouseClicked(MouseEvent event) { /* See mouseReleased(). */ }
+    temp = new File(file.getPath() + ".tmp");
+    try                           // catch specific and general I/O errors
+    {
+      file.getParentFile().mkdirs(); // create cache folder if necessary
+      output = new DataOutputStream(new BufferedOutputStream(new
+        GZIPOutputStream(new FileOutputStream(temp))));
+      output.writeInt(DISK_MAGIC);
+      output.writeInt(DISK_VERSION);
+      output.writeUTF(font.getFontName());
+      output.writeInt(font.getNumGlyphs());
+      output.writeBoolean(CharMap4.probeAll);
+      output.writeUTF((located == null) ? "" : located.file.getPath());
+      output.writeLong((located == null) ? -1 : located.file.length());
+      output.writeLong((located == null) ? -1 : located.file.lastModified());
+      output.writeUTF(method);    // how characters were found
+
+      output.writeInt(charCount);
+      int ch = 0;                 // previous character number
+      for (i = 0; i < charCount; i ++)
+      {
+        output.writeInt(charChar[i] - ch); // difference from previous number
+        output.writeInt(charGlyph[i]);
+        ch = charChar[i];
+      }
 
-  public void mouseDragged(MouseEvent event)
-  {
-    mouseMoved(event);            // treat click-and-drag as simple movement
-  }
+      output.writeInt(glyphCount);
+      for (i = 0; i < glyphCount; i ++)
+        output.writeInt(glyphChar[i]);
+      output.close();             // try to close output file
 
-  public void mouseEntered(MouseEvent event) { /* not used */ }
+      file.delete();              // some systems won't rename over a file
+      if (temp.renameTo(file) == false)
+        temp.delete();            // someone else may have saved this font
+    }
+    catch (IOException ioe)       // all file I/O errors
+    {
+      System.err.println("Unable to write font cache file " + file);
+      System.err.println(ioe.getMessage());
+      temp.delete();              // don't leave junk behind
+    }
+  } // end of diskSave() method
 
-  public void mouseExited(MouseEvent event) { /* not used */ }
 
-  public void mouseMoved(MouseEvent event)
-  {
-    /* Called when the mouse changes position, often pixel by pixel.  We only
-    use this for a mouse caption, which doesn't actually follow the mouse, as
-    that would be annoying.  The text appears in a fixed location at the top of
-    the screen.  Mouse movement can change a "click" into a "drag".  We don't
-    automatically cancel our click highlighting upon movement, because some
-    tolerance is more comfortable for users. */
+/*
+  scanFont() method
 
-    StringBuffer buffer;          // faster than String for multiple appends
-    int ch;                       // one character from string as an integer
-    int index;                    // cell index for character or glyph
-    boolean repaint;              // true if we should repaint our display
-    String text;                  // mouse caption for this cell, if any
+  Enumerate the Unicode characters chosen by planScan() in the font.  Each
+  character is independent of the others, so the ranges are split into chunks
+  that are processed in parallel by a fork-join pool.  See CharMap4ScanTask.
 
-    /* Fetch the correct caption for the cell pointed to by the mouse. */
+  Characters are probed in "waves" of ascending character numbers, each twice
+  as big as the one before, and the grid panel is given the results so far
+  after each wave.  The first page can be shown after a few hundred probes, no
+  matter how big the font is.
+*/
+  void scanFont()
+  {
+    int i, k;                     // index variables
 
-    index = convertMouse(event);  // convert pixel coordinates to index value
-    repaint = false;              // assume that we won't need to repaint
-    text = null;                  // assume no changes to caption string
-    if (index < 0)                // is mouse is over defined character?
+    /* Each displayable character gets one bit in <charBits>, indexed by
+    Unicode character number, which is only 136 KB for the whole Unicode range.
+    The first non-spacing glyph for each character is appended to a small list
+    kept by each chunk.  We only need the first glyph even if a character maps
+    to more than one glyph.  No array is ever allocated with one integer per
+    possible character. */
+
+    AtomicLongArray charBits = new AtomicLongArray((CharMap4.MAX_UNICODE
+      + 64) / 64);                // all bits start as zero
+
+    /* The <glyphChar> array is indexed by internal glyph number and has a
+    non-negative character number for each glyph, or -1 for no mapping.  We
+    save only the first character even if a glyph is used by more than one
+    character.  The complete list of characters for each glyph is built after
+    the scan; see shareBuild().  Chunks finish in any order, so "first" means
+    the smallest character number, which is what a single loop would find. */
+
+    glyphCount = Math.max(0, font.getNumGlyphs()); // don't trust source
+    AtomicIntegerArray glyphFirst = new AtomicIntegerArray(glyphCount);
+    glyphChar = new int[glyphCount]; // we always know final size for these
+    glyphGlyph = new int[glyphCount];
+    for (i = 0; i < glyphCount; i ++)
     {
-      repaint |= (hoverIndex >= 0); // no, repaint if position has changed
-      hoverIndex = NO_MOUSE;      // this character is no longer highlighted
-      text = CharMap4.EMPTY_STATUS; // remove the caption string, if any
+      glyphFirst.set(i, -1);      // default to no mapping for all glyphs
+      glyphChar[i] = -1;
+      glyphGlyph[i] = i;          // assume that all glyphs map to themselves!
     }
-    else if (hoverIndex != index) // has there been a change in position?
-    {
-      buffer = new StringBuffer(); // allocate empty string buffer for result
-      ch = cellChar[index];       // character number or -1 if unmapped glyph
-      hoverIndex = index;         // turn on highlighting for this character
-      repaint = true;             // mark ourselves as needing to be repainted
 
-      /* When displaying glyphs, always show the glyph number.  Then try to add
-      information for a corresponding character number. */
+    /* Create compressed (smaller) arrays for only those characters that can be
+    displayed.  These grow as each wave finishes.  Character numbers come from
+    the bits in ascending order, and the chunks have their glyph lists in the
+    same order. */
+
+    charChar = new int[WAVE_FIRST]; // list of Unicode character numbers
+    charCount = 0;                // no displayable characters found yet
+    charGlyph = new int[WAVE_FIRST]; // list of internal glyph numbers
 
-      if (CharMap4.glyphFlag)     // are we displaying raw glyphs?
+    /* Enumerate all possible Unicode characters, one wave at a time. */
+
+    int begin = 0;                // first position in next wave
+    int size = WAVE_FIRST;        // number of positions in next wave
+    int total = rangeStart[rangeStart.length - 1]; // all positions, all ranges
+    while (begin < total)
+    {
+      int end = Math.min(total, (begin + size)); // end of this wave
+      CharMap4ScanTask task = new CharMap4ScanTask(this, charBits,
+        glyphFirst, begin, end);  // all positions in this wave
+      ForkJoinPool.commonPool().invoke(task); // wait for all chunks to finish
+      if (cancelFlag)             // has the caller lost interest in us?
+        return;                   // yes, partial results are never reported
+
+      if ((charCount + task.found) > charChar.length) // need bigger arrays?
       {
-        buffer.append("Glyph ");
-        buffer.append(CharMap4.formatComma.format(cellGlyph[index]));
-        buffer.append(" = ");
-        if (ch < 0)
-          buffer.append("no Unicode character mapping");
+        int grow = Math.max((2 * charChar.length), (charCount + task.found));
+        charChar = Arrays.copyOf(charChar, grow);
+        charGlyph = Arrays.copyOf(charGlyph, grow);
       }
+      task.copyGlyphs(charGlyph, charCount); // join glyph lists from chunks
 
-      /* Java maps old 8-bit non-Unicode dingbat (symbol) fonts to the range
-      between 0xF020 to 0xF0FF.  Since this is in the "private use" area of
-      Unicode, we don't have a meaningful caption anyway unless we assume a
-      remapping. */
+      /* Only look at bits for character numbers inside this wave.  Ranges are
+      in ascending order, so no other wave sets bits between <first> and
+      <last>. */
 
-      if ((ch >= 0xF020) && (ch <= 0xF0FF) && (charCount <= 256))
+      int first = positionChar(begin); // first character number in wave
+      int last = positionChar(end - 1); // last character number in wave
+      k = charCount;              // place displayable entries starting here
+      for (i = first / 64; i <= (last / 64); i ++)
       {
-        buffer.append(CharMap4.unicodeNotation(ch));
-        buffer.append(" =? ");
-        if (ch < 0xF07F)          // remapping to standard keyboard?
-        {
-          ch -= 0xF000;           // continue by assuming this character
-        }
-        else if (CharMap4.mswinFlag) // are we running on Microsoft Windows?
-        {
-          buffer.append(CharMap4.unicodeNotation(ch - 0xF000));
-          buffer.append(" = ");
-          buffer.append(CharMap4.winaltNotation(ch - 0xF000));
-          ch = -1;                // that's the end of the caption
-        }
-        else                      // not keyboard map, not running Windows
+        long bits = charBits.get(i); // 64 characters at a time
+        if (i == (first / 64))    // ignore bits before this wave
+          bits &= -1L << (first & 63);
+        if (i == (last / 64))     // ignore bits after this wave
+          bits &= -1L >>> (63 - (last & 63));
+        while (bits != 0)         // for each bit that is set
         {
-          buffer.append(CharMap4.unicodeNotation(ch - 0xF000));
-          buffer.append(" = ");
-          buffer.append("decimal ");
-          buffer.append(CharMap4.formatComma.format(ch - 0xF000));
-          ch = -1;                // that's the end of the caption
+          charChar[k ++] = (i * 64) + Long.numberOfTrailingZeros(bits);
+          bits &= bits - 1;       // clear lowest bit that is set
         }
       }
+      charCount += task.found;    // total number of displayable characters
 
-      /* Get a standard caption string if we still have a character number. */
+      /* The grid panel gets its own copy of <glyphChar>, because later waves
+      will change entries that are still -1.  Entries already set never change,
+      because later waves have bigger character numbers. */
 
-      if (ch >= 0)                // do we have a character number?
+      glyphChar = new int[glyphCount];
+      for (i = 0; i < glyphCount; i ++)
+        glyphChar[i] = glyphFirst.get(i); // first character, or -1 for none
+      synchronized (this)         // grid panel reads while we keep going
       {
-        buffer.append(CharMap4.captionGet(ch)); // get the standard caption
+        partChar = charChar;      // arrays are only appended after <partCount>
+        partCount = charCount;
+        partGlyph = charGlyph;
+        partGlyphChar = glyphChar;
+        partGlyphGlyph = glyphGlyph;
       }
-      text = buffer.toString();   // convert string buffer to regular string
-    }
-
-    /* Don't waste time setting the dialog box if nothing has changed. */
+      grid.repaint();             // safe to call from any thread
 
-    if ((text != null)            // if we constructed a new caption string
-      && (CharMap4.statusDialog.getText().equals(text) == false))
-    {
-      CharMap4.statusDialog.setText(text); // copy new string to mouse caption
+      begin = end;                // next wave starts where this one ended
+      size *= 2;                  // and is twice as big
     }
 
-    /* Avoid redrawing the screen unless the mouse has changed cells. */
-
-    if ((clickIndex >= 0) && (clickIndex != index)) // away from old click?
-    {
-      clickIndex = NO_MOUSE;      // cancel forgotten highlight character
-      repaint = true;             // mark ourselves as needing to be repainted
-    }
+    charChar = Arrays.copyOf(charChar, charCount); // remove unused entries
+    charGlyph = Arrays.copyOf(charGlyph, charCount);
 
-    if (repaint) this.repaint();  // repaint our display if something changed
+  } // end of scanFont() method
 
-  } // end of mouseMoved() method
 
-  public void mousePressed(MouseEvent event)
+/*
+  shareBuild() method
+
+  Make a complete list of characters that map to each glyph, as two primitive
+  arrays: <shareChar> has all characters from <charChar> sorted by glyph
+  number, and the characters for glyph <g> are at indexes from <shareStart[g]>
+  up to but not including <shareStart[g + 1]>.  This takes one integer per
+  displayable character plus one per glyph, no matter how the characters are
+  shared, and no objects per glyph.  Characters stay in ascending order for
+  each glyph, because <charChar> is in ascending order.
+*/
+  void shareBuild()
   {
-    /* Called when a mouse button is first pressed, and before it is released.
-    We highlight the cell that the mouse is pointing at. */
+    int i;                        // index variable
+    int[] next;                   // next free index for each glyph's list
+
+    shareStart = new int[glyphCount + 1]; // extra entry is end of last list
+    for (i = 0; i < charCount; i ++) // count characters for each glyph
+      shareStart[charGlyph[i] + 1] ++;
+    for (i = 0; i < glyphCount; i ++) // convert counts to starting indexes
+      shareStart[i + 1] += shareStart[i];
+
+    next = Arrays.copyOf(shareStart, glyphCount); // each list starts empty
+    shareChar = new int[charCount];
+    for (i = 0; i < charCount; i ++) // put each character in glyph's list
+      shareChar[next[charGlyph[i]] ++] = charChar[i];
+  }
 
-    int index;                    // cell index for character or glyph
-    boolean repaint;              // true if we should repaint our display
 
-    clickStartX = clickStartY = NO_MOUSE; // no starting coordinates for click
-    index = convertMouse(event);  // convert pixel coordinates to index value
-    repaint = false;              // assume that we won't need to repaint
-    if (index >= 0)               // only if mouse is over defined character
+/*
+  planScan() method
+
+  Decide which character numbers to probe, after the scan wasn't found in the
+  cache.  If we can find the font file, and the file has a usable "cmap"
+  table, then only those characters listed in the table are probed.  This is
+  much faster than asking Java about all 1,114,112 possible characters.
+  Otherwise, only the assigned Unicode blocks are probed, unless the -p option
+  was given.
+*/
+  void planScan(CharMap4Font located)
+  {
+    int[] cmap = ((located == null) || CharMap4.probeAll) ? null
+      : located.readCmap();       // characters listed by font file, if any
+    if (cmap != null)             // does the font file list its characters?
     {
-      clickIndex = hoverIndex = index; // turn on highlighting this character
-      clickStartX = event.getX(); // get starting X coordinate of mouse click
-      clickStartY = event.getY(); // get starting Y coordinate of mouse click
-      repaint = true;             // mark ourselves as needing to be repainted
+      method = "cmap table";      // yes, only probe those characters
+      setRanges(cmap);
     }
-    else if ((clickIndex >= 0) || (hoverIndex >= 0)) // previous highlights?
+    else if (CharMap4.probeAll)   // has the user asked for everything?
     {
-      clickIndex = hoverIndex = NO_MOUSE; // cancel forgotten highlight char
-      repaint = true;             // mark ourselves as needing to be repainted
+      method = "probing every character";
+      int[] full = new int[2];    // one range with everything
+      full[0] = CharMap4.MIN_UNICODE;
+      full[1] = CharMap4.MAX_UNICODE;
+      setRanges(full);
+    }
+    else                          // probe only assigned Unicode blocks
+    {
+      method = "probing assigned blocks";
+      CharMap4Ranges assigned = new CharMap4Ranges();
+      for (int i = 0; i < ASSIGNED_RANGES.length; i += 2)
+      {
+        int first = Math.max(ASSIGNED_RANGES[i], CharMap4.MIN_UNICODE);
+        int last = Math.min(ASSIGNED_RANGES[i + 1], CharMap4.MAX_UNICODE);
+        if (first <= last)        // keep what is in our supported range
+          assigned.addRange(first, last);
+      }
+      setRanges(assigned.toArray());
     }
+  } // end of planScan() method
 
-    if (repaint) this.repaint();  // repaint our display if something changed
 
-  } // end of mousePressed() method
+/*
+  positionChar() method
 
-  public void mouseReleased(MouseEvent event)
+  Convert a position in the whole scan to a character number.
+*/
+  int positionChar(int pos)
   {
-    /* Called after a mouse button is released, and before mouseClicked().  If
-    the mouse moves too much, then Java doesn't call mouseClicked(), so we use
-    this method to implement our own rules for how much a mouse can move while
-    being clicked. */
+    int range = Arrays.binarySearch(rangeStart, pos); // exact match or not
+    if (range < 0)                // not the first position in a range?
+      range = (- range) - 2;      // then inside the range before that
+    return(rangeList[2 * range] + (pos - rangeStart[range]));
+  }
 
-    int index;                    // cell index for character or glyph
-    boolean repaint;              // true if we should repaint our display
 
-    index = convertMouse(event);  // convert pixel coordinates to index value
-    repaint = false;              // assume that we won't need to repaint
-    if ((index >= 0)              // only if mouse is over defined character
-      && (clickIndex == index)    // and it's the same as when mouse pressed
-      && (Math.abs(clickStartX - event.getX()) <= MOUSE_DRIFT)
-      && (Math.abs(clickStartY - event.getY()) <= MOUSE_DRIFT))
+/*
+  setRanges() method
+
+  Save a list of character ranges to be probed, as pairs of first and last
+  character numbers, in ascending order.  Each range is given a starting
+  "position" so that the ranges can be split into equal pieces of work, no
+  matter how big or how small the individual ranges are.
+*/
+  void setRanges(int[] list)
+  {
+    int count = list.length / 2;  // number of ranges
+    rangeList = list;
+    rangeStart = new int[count + 1]; // extra entry is total of all ranges
+    rangeStart[0] = 0;
+    for (int i = 0; i < count; i ++)
+      rangeStart[i + 1] = rangeStart[i] + (list[(2 * i) + 1] - list[2 * i] + 1);
+  }
+
+} // end of CharMap4Scan class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  CharMap4ScanTask class
+
+  One piece of a font scan, for positions from <begin> up to but not including
+  <end> in the scan's list of character ranges.  Large pieces are split in half
+  until they are small enough to be done directly.  Displayable characters and
+  glyphs go into arrays shared by all pieces, except that each piece keeps its
+  own list of glyphs in character order.  The number of displayable characters
+  is added up as the pieces finish.
+*/
+
+class CharMap4ScanTask extends RecursiveAction
+{
+  /* constants */
+
+  static final int CHUNK_SIZE = 4096; // character numbers done without split
+  static final long serialVersionUID = 1L; // RecursiveAction is Serializable
+
+  /* instance variables */
+
+  int begin, end;                 // range of positions in <scan.rangeList>
+  AtomicLongArray charBits;       // one bit for each displayable character
+  CharMap4ScanTask first, second; // two halves, if this piece was split
+  int found;                      // number of displayable characters found
+  AtomicIntegerArray glyphFirst;  // smallest character for each glyph, or -1
+  int[] glyphList;                // first glyph of each character found here
+  CharMap4Scan scan;              // font and cancel flag for whole scan
+
+  /* constructor */
+
+  public CharMap4ScanTask(CharMap4Scan scan, AtomicLongArray charBits,
+    AtomicIntegerArray glyphFirst, int begin, int end)
+  {
+    this.begin = begin;
+    this.charBits = charBits;
+    this.end = end;
+    this.first = this.second = null; // not split yet
+    this.found = 0;               // nothing found until we've been run
+    this.glyphFirst = glyphFirst;
+    this.glyphList = null;        // created only if piece is done directly
+    this.scan = scan;
+  }
+
+  /* compute() method: called by the fork-join pool */
+
+  protected void compute()
+  {
+    if (scan.cancelFlag)          // has the caller lost interest in us?
+      return;                     // yes, don't bother with this piece
+
+    if ((end - begin) > CHUNK_SIZE) // is this piece too big to do directly?
     {
-      /* Mouse is over a defined character or glyph. */
+      int middle = begin + ((end - begin) / 2); // split into two halves
+      first = new CharMap4ScanTask(scan, charBits, glyphFirst, begin, middle);
+      second = new CharMap4ScanTask(scan, charBits, glyphFirst, middle, end);
+      invokeAll(first, second);   // run both halves, maybe in parallel
+      found = first.found + second.found; // merge counts after both done
+      return;
+    }
 
-      if ((event.getButton() != MouseEvent.BUTTON1) // right means not primary
-        || event.isAltDown() || event.isControlDown() || event.isShiftDown())
-      {
-        /* A right click or alternate key click invokes a pop-up menu with
-        options to copy character or glyph numbers, captions, etc. */
+    Font font = scan.font;        // local copies of frequently used objects
+    int glycount = scan.glyphCount; // total number of glyphs in font
+    int glymissing = font.getMissingGlyphCode(); // undefined characters
+    int[] starts = scan.rangeStart; // position of each character range
+    glyphList = new int[64];      // append-only list, grows as required
 
-        CharMap4.rightSaveCaption = CharMap4.statusDialog.getText(); // caption
-        CharMap4.rightSaveChar = cellChar[index]; // save character number
-        CharMap4.rightSaveGlyph = cellGlyph[index]; // save glyph number
+    /* Find the range that contains our first position.  After that, we step
+    through the ranges in order. */
 
-        CharMap4.rightCopyCaption.setEnabled((CharMap4.rightSaveCaption != null)
-          && (CharMap4.rightSaveCaption.length() > 0));
-        CharMap4.rightCopyGlyph.setEnabled(CharMap4.rightSaveGlyph >= 0);
-        CharMap4.rightCopyNotation.setEnabled(CharMap4.rightSaveChar >= 0);
-        CharMap4.rightCopyNumber.setEnabled(CharMap4.rightSaveChar >= 0);
-        CharMap4.rightCopyText.setEnabled(CharMap4.rightSaveChar >= 0);
+    int range = Arrays.binarySearch(starts, begin); // exact match or not
+    if (range < 0)                // not the first position in a range?
+      range = (- range) - 2;      // then inside the range before that
 
-        CharMap4.rightPopup.show(this, event.getX(), event.getY());
-      }
-      else
+    for (int pos = begin; pos < end; pos ++)
+    {
+      if (pos >= starts[range + 1]) // have we finished this range?
+        range ++;                 // yes, go on to the next range
+      int i = scan.rangeList[2 * range] + (pos - starts[range]);
+                                  // convert position to character number
+
+      /* Ignore characters that Java knows it can't display. */
+
+//    if (font.canDisplay((char) i) == false) // Java 1.4
+      if (font.canDisplay(i) == false) // Java 5.0
+        continue;                 // jump to next interation of <for> loop
+
+      /* Update mapping information between characters and glyphs.  Early Java
+      5.0 on the Apple Macintosh has a bug where canDisplay() returns true for
+      every possible Unicode character number.  Ignore characters that map to
+      the "missing" glyph (usually number 0) or to a "spacing" glyph (often the
+      out-of-range glyph number of 65,535). */
+
+      GlyphVector glyvector = font.createGlyphVector(scan.render, CharMap4
+        .charToString(i));        // get glyph list for this character
+      int glyphs = glyvector.getNumGlyphs(); // supposed number of glyphs
+      int good = -1;              // first good glyph for this character
+      for (int k = 0; k < glyphs; k ++) // for each glyph in the glyph vector
       {
-        /* A left click or primary button click copies the character as text,
-        if there is a unique character number. */
+        int glyph = glyvector.getGlyphCode(k); // get one glyph number
+        if ((glyph >= 0) && (glyph < glycount) && (glyph != glymissing))
+        {                         // ignore missing and spacing glyphs
+          if (good < 0)           // does this character already have a glyph?
+            good = glyph;         // no, save the first good glyph we find
+
+          /* Keep the smallest character number for each glyph, no matter in
+          which order the pieces are run.  Retry if another thread changed the
+          value between our get() and compareAndSet(). */
+
+          int old = glyphFirst.get(glyph); // current first character, or -1
+          while (((old < 0) || (old > i))
+            && (glyphFirst.compareAndSet(glyph, old, i) == false))
+          {
+            old = glyphFirst.get(glyph); // somebody else got there first
+          }
+        }
+      }
 
-        if (cellChar[index] >= 0)
-          mouseReplaceText(CharMap4.charToString(cellChar[index]));
+      /* Count each character as displayable only if a non-spacing glyph was
+      found.  Neighboring pieces may share a 64-bit word in <charBits>, so bits
+      are set with compareAndSet(). */
+
+      if (good >= 0)
+      {
+        long bit = 1L << (i & 63); // bit for this character in its word
+        long old = charBits.get(i / 64);
+        while (charBits.compareAndSet((i / 64), old, (old | bit)) == false)
+          old = charBits.get(i / 64); // somebody else changed the word
+
+        if (found >= glyphList.length) // is there room for another glyph?
+          glyphList = Arrays.copyOf(glyphList, (2 * glyphList.length));
+        glyphList[found ++] = good; // append glyph in character order
       }
     }
+  } // end of compute() method
+
+
+/*
+  copyGlyphs() method
+
+  After all pieces are finished, copy their glyph lists into one array, in the
+  same order as the characters.  Return the next free index in <target>.
+*/
+  int copyGlyphs(int[] target, int where)
+  {
+    if (first != null)            // was this piece split in half?
+      return(second.copyGlyphs(target, first.copyGlyphs(target, where)));
+    if (found > 0)                // not split, did we find any characters?
+      System.arraycopy(glyphList, 0, target, where, found);
+    return(where + found);
+  }
+
+} // end of CharMap4ScanTask class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  CharMap4Font class
+
+  Java doesn't tell us where a font comes from.  This class looks through the
+  usual font folders for TrueType and OpenType files, reads the "full name" of
+  each font from the file's "name" table, and remembers which file (and which
+  font inside a collection file) has that name.  The folders are only searched
+  once, the first time that any font is located.
+
+  See the OpenType specification for the file layout:
+
+      https://docs.microsoft.com/en-us/typography/opentype/spec/otff
+      https://docs.microsoft.com/en-us/typography/opentype/spec/cmap
+      https://docs.microsoft.com/en-us/typography/opentype/spec/name
+*/
+
+class CharMap4Font
+{
+  /* constants */
+
+  static final int MAX_DEPTH = 6; // how deep to search in font folders
+  static final int MAX_CMAP = 0x1000000; // largest "cmap" table we will read
+  static final int NAME_FULL = 4; // "name" table ID for full font name
+  static final int TAG_CMAP = 0x636D6170; // "cmap" table tag
+  static final int TAG_NAME = 0x6E616D65; // "name" table tag
+  static final int TAG_TTCF = 0x74746366; // "ttcf" collection header
+
+  /* class variables */
 
-    /* Avoid redrawing the screen unless the mouse has changed cells. */
+  static HashMap fontMap = null;  // lowercase full names to CharMap4Font
 
-    if (clickIndex >= 0)          // mouse release always ends click highlight
-    {
-      clickIndex = NO_MOUSE;      // this character is no longer highlighted
-      repaint = true;             // mark ourselves as needing to be repainted
-    }
-    clickStartX = clickStartY = NO_MOUSE; // no starting coordinates for click
+  /* instance variables */
 
-    if (hoverIndex != index)      // has there been a change in position?
-    {
-      hoverIndex = index;         // turn on highlighting for this character
-      repaint = true;             // mark ourselves as needing to be repainted
-    }
+  File file;                      // font file (*.otf, *.ttc, *.ttf)
+  int offset;                     // offset of table directory in that file
 
-    if (repaint) this.repaint();  // repaint our display if something changed
+  /* constructor */
 
-  } // end of mouseReleased() method
+  public CharMap4Font(File file, int offset)
+  {
+    this.file = file;
+    this.offset = offset;
+  }
 
 
 /*
-  mouseReplaceText() method
+  find() method
 
-  After a mouse click, or the pop-up menu simulating a mouse click, call this
-  method with a string to be added to the sample text.
+  Return the file for a font, or <null> if we can't find one.  Java's logical
+  fonts ("Dialog", "Serif", etc) are never found, because they are made from
+  several physical fonts.
 */
-  void mouseReplaceText(String text)
+  static synchronized CharMap4Font find(Font font)
   {
-    if (CharMap4.clickReplace)    // does each click replace sample text?
-      CharMap4.sampleDialog.setText(text);
-    else                          // insert character or replace selection
-      CharMap4.sampleDialog.replaceSelection(text);
-    CharMap4.copyText();          // copy all sample text to clipboard
+    if (fontMap == null)          // have we searched the font folders yet?
+    {
+      fontMap = new HashMap();    // start with no known font files
+      String home = System.getProperty("user.home");
+      String windir = System.getenv("WINDIR"); // may be <null>
+      String local = System.getenv("LOCALAPPDATA"); // may be <null>
+
+      if (windir != null)         // Microsoft Windows
+        searchFolder(new File(windir, "Fonts"), 0);
+      if (local != null)          // Windows 10 fonts installed per user
+        searchFolder(new File(local, "Microsoft" + File.separator + "Windows"
+          + File.separator + "Fonts"), 0);
+      searchFolder(new File("/Library/Fonts"), 0); // Apple Macintosh
+      searchFolder(new File("/System/Library/Fonts"), 0);
+      searchFolder(new File(home, "Library" + File.separator + "Fonts"), 0);
+      searchFolder(new File("/usr/share/fonts"), 0); // Linux and UNIX
+      searchFolder(new File("/usr/local/share/fonts"), 0);
+      searchFolder(new File(home, ".fonts"), 0);
+      searchFolder(new File(home, ".local" + File.separator + "share"
+        + File.separator + "fonts"), 0);
+      searchFolder(new File(System.getProperty("java.home"), "lib"
+        + File.separator + "fonts"), 0); // fonts that come with Java
+    }
+    return((CharMap4Font) fontMap.get(font.getFontName(Locale.ENGLISH)
+      .toLowerCase()));           // may be <null>
   }
 
 
 /*
-  mouseWheelMoved() method
-
-  This is the mouse wheel listener, for the scroll wheel on some mice.  The
-  "unit" scroll uses the local system preferences for how many lines/rows per
-  click of the mouse.  The "unit" scroll may be too big if there are only one
-  or two lines in the display.
+  findTable() method
 
-  The mouse wheel listener has no interaction with the other mouse listeners
-  above.
+  Given an open font file, return the file offset and length of a table in the
+  font at <offset>, or <null> if the font doesn't have that table.
 */
-  public void mouseWheelMoved(MouseWheelEvent event)
+  static long[] findTable(RandomAccessFile input, int offset, int tag)
+    throws IOException
   {
-    switch (event.getScrollType()) // different mice scroll differently
+    input.seek(offset + 4);       // skip version number for font
+    int count = input.readUnsignedShort(); // number of tables in font
+    for (int i = 0; i < count; i ++)
     {
-      case (MouseWheelEvent.WHEEL_BLOCK_SCROLL):
-        CharMap4.gridScroll.setValue(CharMap4.gridScroll.getValue()
-          + (event.getWheelRotation()
-          * CharMap4.gridScroll.getBlockIncrement()));
-        break;
-
-      case (MouseWheelEvent.WHEEL_UNIT_SCROLL):
-        int i = CharMap4.gridScroll.getBlockIncrement(); // maximum scroll rows
-        i = Math.max((-i), Math.min(i, event.getUnitsToScroll())); // limits
-        CharMap4.gridScroll.setValue(CharMap4.gridScroll.getValue() + i);
-                                  // scroll using limited local preferences
-        break;
-
-      default:                    // ignore anything that we don't recognize
-        break;
+      input.seek(offset + 12 + (i * 16)); // each table record is 16 bytes
+      if (input.readInt() == tag) // is this the table we want?
+      {
+        input.readInt();          // skip checksum
+        long[] result = new long[2];
+        result[0] = input.readInt() & 0xFFFFFFFFL; // offset from file start
+        result[1] = input.readInt() & 0xFFFFFFFFL; // length in bytes
+        return(result);
+      }
     }
-  } // end of mouseWheelMoved() method
+    return(null);                 // table not found
+
+  } // end of findTable() method
 
 
 /*
-  paintComponent() method
+  readFullName() method
 
-  This is the "paint" method for a Java Swing component.  We have to worry
-  about the window size changing, new options chosen by the user, etc.  There
-  are many temporary variables in this method, because some calculations are
-  difficult and declaring all variables at the beginning would be worse than
-  declaring them when they are first used.
+  Return the English full name of the font at <offset>, or <null> if there is
+  no such name.  Windows names (platform 3) are in UTF-16, and are preferred.
+  Macintosh names (platform 1) are assumed to be plain text.
 */
-  protected void paintComponent(Graphics context)
+  static String readFullName(RandomAccessFile input, int offset)
+    throws IOException
   {
-    Graphics2D gr2d;              // special subclass of graphics context
-    int i, k;                     // index variables
-    FontRenderContext render;     // needed for displaying low-level glyphs
-
-    /* Most of this code would work with the standard Graphics object, but some
-    of the glyph routines need the newer Graphics2D subclass. */
-
-    gr2d = (Graphics2D) context;  // another name for the same graphics context
-    render = gr2d.getFontRenderContext(); // for displaying low-level glyphs
-
-    /* Erase the entire panel using our choice of background colors. */
+    long[] table = findTable(input, offset, TAG_NAME);
+    if (table == null)            // every usable font has a "name" table
+      return(null);
+
+    input.seek(table[0] + 2);     // skip format number
+    int count = input.readUnsignedShort(); // number of name records
+    long strings = table[0] + input.readUnsignedShort(); // string storage
+    String result = null;         // no name found yet
+    for (int i = 0; i < count; i ++)
+    {
+      input.seek(table[0] + 6 + (i * 12)); // each name record is 12 bytes
+      int platform = input.readUnsignedShort();
+      int encoding = input.readUnsignedShort();
+      int language = input.readUnsignedShort();
+      int nameId = input.readUnsignedShort();
+      int length = input.readUnsignedShort();
+      int start = input.readUnsignedShort();
+      if (nameId != NAME_FULL)    // we only want the full font name
+        continue;
+
+      byte[] bytes = new byte[length]; // raw bytes for this name
+      input.seek(strings + start);
+      input.readFully(bytes);
+      if ((platform == 3) && (language == 0x0409)) // Windows, US English
+        return(new String(bytes, "UTF-16BE")); // best possible name
+      else if ((platform == 1) && (encoding == 0) && (language == 0)
+        && (result == null))      // Macintosh, Roman, English
+      {
+        result = new String(bytes, "ISO-8859-1"); // close enough for English
+      }
+    }
+    return(result);               // may be <null>
 
-    gr2d.setColor(PANEL_COLOR);   // flood fill with background color
-    gr2d.fillRect(0, 0, this.getWidth(), this.getHeight());
+  } // end of readFullName() method
 
-    /* If the font has changed, then we need to redo both the height and the
-    width, and we must collect new information about the font. */
 
-    boolean redoHeight = false;   // assume that panel height doesn't change
-    boolean redoWidth = false;    // assume that panel width doesn't change
+/*
+  readCmap() method
+
+  Read the "cmap" table from our font file, and return a list of character
+  ranges that map to a real glyph, as pairs of first and last character numbers
+  in ascending order.  Only Unicode subtables in format 4 (16-bit) or format 12
+  (full Unicode) are understood.  Return <null> if there is no such subtable,
+  or if there is any problem, and the caller will probe every character
+  instead.  Symbol fonts (Windows encoding 0) are deliberately not handled,
+  because Java moves their characters to a different range.
+*/
+  int[] readCmap()
+  {
+    byte[] bytes;                 // raw bytes for the whole "cmap" table
+    java.nio.ByteBuffer cmap;     // big-endian view of <bytes>
+    RandomAccessFile input;       // font file, while open
 
-    if (CharMap4.displayFont == null) // is there a font to display characters?
-      return;                     // no, then can't do anything more
-    else if (CharMap4.displayFont.equals(panelFont) == false) // a new font?
+    input = null;                 // file isn't open yet
+    try                           // catch specific and general I/O errors
     {
-      clickIndex = hoverIndex = NO_MOUSE; // cancel forgotten highlight char
-      cornerIndex = 0;            // force top-left corner to first character
-      panelFont = CharMap4.displayFont; // save current character display font
-      redoHeight = redoWidth = true; // force both directions to be redone
-
-      /* Get the font metrics.  We want the "official" maximum height and
-      width.  Note that even though a font provides this information, there may
-      still be characters that draw outside the declared bounds.  For critical
-      applications, you would have to call FontMetrics.getMaxCharBounds(), and
-      that may be slow if the font is very large (not tested). */
-
-      fontData = gr2d.getFontMetrics(panelFont); // save a copy of metrics
-      lineAscent = fontData.getAscent(); // number of pixels above baseline
-      lineHeight = fontData.getHeight(); // height of each line in pixels
-      maxWidth = Math.max(10, fontData.getMaxAdvance()); // maximum all chars
-      horizStep = maxWidth + (2 * TEXT_MARGIN) + GRID_WIDTH; // between cells
-      vertiStep = lineHeight + (2 * TEXT_MARGIN) + GRID_WIDTH; // between cells
+      input = new RandomAccessFile(file, "r");
+      long[] table = findTable(input, offset, TAG_CMAP);
+      if ((table == null) || (table[1] > MAX_CMAP))
+        return(null);             // no table, or table is unreasonably large
+      bytes = new byte[(int) table[1]];
+      input.seek(table[0]);
+      input.readFully(bytes);     // tables are small enough to read at once
+    }
+    catch (IOException ioe)       // includes end-of-file for damaged fonts
+    {
+      return(null);
+    }
+    finally                       // always close the font file
+    {
+      closeQuietly(input);
+    }
 
-      /* The <charTemp> array is indexed by Unicode character number and has a
-      non-negative glyph number for each character, or -1 for no mapping.  We
-      only need the first non-spacing glyph even if a character maps to more
-      than one glyph. */
-
-      charCount = 0;              // start with no characters in the list
-      int[] charTemp = new int[CharMap4.MAX_UNICODE + 1]; // use maximum size
-      for (i = 0; i < charTemp.length; i ++)
-        charTemp[i] = -1;         // default to no mapping for all characters
-
-      /* The <glyphChar> array is indexed by internal glyph number and has a
-      non-negative character number for each glyph, or -1 for no mapping.  We
-      save only the first character even if a glyph is used by more than one
-      character.  It would be nice to have a complete list of characters that
-      map to each glyph, but with upwards of 50,000 glyphs in some fonts, this
-      would take too many resources (too much memory for Vector objects and too
-      much processing time). */
-
-      glyphCount = Math.max(0, panelFont.getNumGlyphs()); // don't trust source
-      int glymissing = panelFont.getMissingGlyphCode(); // undefined characters
-      glyphChar = new int[glyphCount]; // we always know final size for these
-      glyphGlyph = new int[glyphCount];
-      for (i = 0; i < glyphCount; i ++)
-      {
-        glyphChar[i] = -1;        // default to no mapping for all glyphs
-        glyphGlyph[i] = i;        // assume that all glyphs map to themselves!
-      }
+    try                           // catch damaged or truncated subtables
+    {
+      cmap = java.nio.ByteBuffer.wrap(bytes); // default order is big-endian
 
-      /* Enumerate all possible Unicode characters. */
+      /* Choose the best subtable.  Full Unicode (format 12) is better than
+      16-bit Unicode (format 4).  Windows platform 3 and Unicode platform 0 are
+      equally good. */
 
-      for (i = CharMap4.MIN_UNICODE; i <= CharMap4.MAX_UNICODE; i ++)
+      int best = -1;              // offset of best subtable found so far
+      int bestFormat = -1;        // format number of that subtable
+      int count = cmap.getShort(2) & 0xFFFF; // number of encoding records
+      for (int i = 0; i < count; i ++)
       {
-        /* Ignore characters that Java knows it can't display. */
-
-//      if (panelFont.canDisplay((char) i) == false) // Java 1.4
-        if (panelFont.canDisplay(i) == false) // Java 5.0
-          continue;               // jump to next interation of <for> loop
-
-        /* Update mapping information between characters and glyphs.  Early
-        Java 5.0 on the Apple Macintosh has a bug where canDisplay() returns
-        true for every possible Unicode character number.  Ignore characters
-        that map to the "missing" glyph (usually number 0) or to a "spacing"
-        glyph (often the out-of-range glyph number of 65,535). */
-
-        GlyphVector glyvector = panelFont.createGlyphVector(render, CharMap4
-          .charToString(i));      // get glyph list for this character
-        int glycount = glyvector.getNumGlyphs(); // supposed number of glyphs
-        for (k = 0; k < glycount; k ++) // for each glyph in the glyph vector
+        int platform = cmap.getShort(4 + (i * 8)) & 0xFFFF;
+        int encoding = cmap.getShort(6 + (i * 8)) & 0xFFFF;
+        int start = cmap.getInt(8 + (i * 8)); // offset from start of table
+        if ((platform == 0) || ((platform == 3)
+          && ((encoding == 1) || (encoding == 10))))
         {
-          int glyph = glyvector.getGlyphCode(k); // get one glyph number
-          if ((glyph >= 0) && (glyph < glyphCount) && (glyph != glymissing))
-          {                       // ignore missing and spacing glyphs
-            if (charTemp[i] < 0)  // does this character already have a glyph?
-              charTemp[i] = glyph; // no, save the first good glyph we find
-            if (glyphChar[glyph] < 0) // does this glyph already have a char?
-              glyphChar[glyph] = i; // no, save the first character we find
+          int format = cmap.getShort(start) & 0xFFFF;
+          if (((format == 4) || (format == 12)) && (format > bestFormat))
+          {
+            best = start;         // remember this subtable
+            bestFormat = format;
           }
         }
-        if (charTemp[i] >= 0)     // count each character as displayable ...
-          charCount ++;           // ... only if a non-spacing glyph found
       }
 
-      /* Use <charTemp> to create compressed (smaller) arrays for only those
-      characters that can be displayed. */
+      if (bestFormat == 4)        // 16-bit segment mapping to delta values
+        return(readCmap4(cmap, best));
+      else if (bestFormat == 12)  // segmented coverage for full Unicode
+        return(readCmap12(cmap, best));
+      else                        // no subtable that we understand
+        return(null);
+    }
+    catch (IndexOutOfBoundsException ioobe)
+    {
+      return(null);               // subtable points outside of the table
+    }
+  } // end of readCmap() method
+
 
-      charChar = new int[charCount]; // list of Unicode character numbers
-      charGlyph = new int[charCount]; // list of internal glyph numbers
-      k = 0;                      // place displayable entries starting here
-      for (i = CharMap4.MIN_UNICODE; i <= CharMap4.MAX_UNICODE; i ++)
+/*
+  readCmap4() method
+
+  Decode a format 4 subtable.  Each segment is a range of characters.  Glyph
+  numbers are either an offset from the character number, or are found in an
+  array, and glyph zero means that the character is not mapped.
+*/
+  static int[] readCmap4(java.nio.ByteBuffer cmap, int start)
+  {
+    CharMap4Ranges result = new CharMap4Ranges(); // collected ranges
+    int segments = (cmap.getShort(start + 6) & 0xFFFF) / 2; // segment count
+    int ends = start + 14;        // array of last character in each segment
+    int starts = ends + (2 * segments) + 2; // array of first characters
+    int deltas = starts + (2 * segments); // array of glyph offsets
+    int offsets = deltas + (2 * segments); // array of glyph array offsets
+
+    for (int i = 0; i < segments; i ++)
+    {
+      int first = cmap.getShort(starts + (2 * i)) & 0xFFFF;
+      int last = cmap.getShort(ends + (2 * i)) & 0xFFFF;
+      int delta = cmap.getShort(deltas + (2 * i)); // signed
+      int where = offsets + (2 * i); // location of this segment's offset
+      int rangeOffset = cmap.getShort(where) & 0xFFFF;
+
+      if ((first == 0xFFFF) && (last == 0xFFFF)) // required final segment
+        continue;
+      for (int ch = first; ch <= last; ch ++)
       {
-        int glyph = charTemp[i];  // get glyph number, if any
-        if (glyph >= 0)           // if character mapped to at least one glyph
+        int glyph;                // glyph number for this character
+        if (rangeOffset == 0)     // glyph is character number plus delta
+          glyph = (ch + delta) & 0xFFFF;
+        else                      // glyph comes from the glyph array
         {
-          charChar[k] = i;        // save Unicode character number
-          charGlyph[k] = glyph;   // save glyph number, if any
-          k ++;                   // finish one more displayable character
+          glyph = cmap.getShort(where + rangeOffset + (2 * (ch - first)))
+            & 0xFFFF;
+          if (glyph != 0)         // missing glyph is not changed by delta
+            glyph = (glyph + delta) & 0xFFFF;
         }
+        if (glyph != 0)           // glyph zero is the "missing" glyph
+          result.add(ch);
       }
-      charTemp = null;            // release memory used by this larger array
-
-      /* Protect ourselves from fonts that have no displayable characters. */
+    }
+    return(result.toArray());
 
-      CharMap4.statusDialog.setText(CharMap4.formatComma.format(charCount)
-        + " characters with " + CharMap4.formatComma.format(glyphCount)
-        + " glyphs");             // subvert "mouse caption" for extra trivia
+  } // end of readCmap4() method
 
-      if ((charCount <= 0) || (glyphCount <= 0)) // need at least one defined
-      {
-        panelFont = null;         // crude, but prevents font from being used
-        return;                   // give up, again and again, on each call
-      }
-    }
 
-    /* Set up our display cells using either character or glyph data. */
+/*
+  readCmap12() method
 
-    if (CharMap4.glyphFlag)       // are we displaying raw glyphs?
-    {
-      cellChar = glyphChar;
-      cellCount = glyphCount;
-      cellGlyph = glyphGlyph;
-    }
-    else                          // no, doing Unicode characters
+  Decode a format 12 subtable.  Each group is a range of characters mapped to
+  consecutive glyph numbers.
+*/
+  static int[] readCmap12(java.nio.ByteBuffer cmap, int start)
+  {
+    CharMap4Ranges result = new CharMap4Ranges(); // collected ranges
+    int groups = cmap.getInt(start + 12); // number of groups
+    for (int i = 0; i < groups; i ++)
     {
-      cellChar = charChar;
-      cellCount = charCount;
-      cellGlyph = charGlyph;
+      int first = cmap.getInt(start + 16 + (i * 12));
+      int last = cmap.getInt(start + 20 + (i * 12));
+      int glyph = cmap.getInt(start + 24 + (i * 12));
+      if (glyph == 0)             // first character maps to "missing" glyph?
+        first ++;                 // yes, skip it
+      first = Math.max(first, CharMap4.MIN_UNICODE);
+      last = Math.min(last, CharMap4.MAX_UNICODE);
+      if (first <= last)          // ignore anything outside of Unicode
+        result.addRange(first, last);
     }
+    return(result.toArray());
 
-    /* If the panel width has changed, then we need to recalculate how many
-    complete columns of text can be displayed inside this panel with the
-    specified margins.  We don't want partial columns, because there is no
-    horizontal scroll bar, only a vertical scroll bar. */
+  } // end of readCmap12() method
 
-    if (redoWidth || (this.getWidth() != panelWidth))
-    {
-      panelWidth = this.getWidth(); // save current panel width in pixels
-      redoWidth = true;           // remember that the width has changed
 
-      panelColumns = Math.max(1,
-        ((panelWidth - (2 * PANEL_MARGIN) - GRID_WIDTH) / horizStep));
-    }
+/*
+  searchFolder() method
 
-    /* If the panel height has changed, then we need to recalculate how many
-    complete lines (rows) can be displayed.  The scroll bar handles any partial
-    later lines that aren't included in our row count. */
+  Look for font files in a folder and its subfolders, and add their names to
+  our list of known fonts.  Files that we can't read are silently ignored.
+*/
+  static void searchFolder(File folder, int depth)
+  {
+    File[] contents = folder.listFiles(); // <null> if not a folder
+    if ((contents == null) || (depth > MAX_DEPTH))
+      return;
 
-    if (redoHeight || (this.getHeight() != panelHeight))
+    for (int i = 0; i < contents.length; i ++)
     {
-      panelHeight = this.getHeight(); // save current panel height in pixels
-      redoHeight = true;          // remember that the height has changed
-
-      panelRows = Math.max(1,
-        ((panelHeight - (2 * PANEL_MARGIN) - GRID_WIDTH) / vertiStep));
+      File next = contents[i];    // one file or subfolder
+      String name = next.getName().toLowerCase();
+      if (next.isDirectory())
+        searchFolder(next, (depth + 1));
+      else if (name.endsWith(".otf") || name.endsWith(".ttc")
+        || name.endsWith(".ttf"))
+      {
+        RandomAccessFile input = null; // file isn't open yet
+        try                       // catch specific and general I/O errors
+        {
+          input = new RandomAccessFile(next, "r");
+          if (input.readInt() == TAG_TTCF) // is this a collection of fonts?
+          {
+            input.readInt();      // skip collection version number
+            int count = input.readInt(); // number of fonts in collection
+            if ((count < 0) || (count > ((input.length() - 12) / 4)))
+              throw new IOException("bad font count"); // more than file has
+            int[] offsets = new int[count];
+            for (int k = 0; k < count; k ++)
+              offsets[k] = input.readInt();
+            for (int k = 0; k < count; k ++)
+              searchFont(input, next, offsets[k]);
+          }
+          else                    // regular file with only one font
+            searchFont(input, next, 0);
+        }
+        catch (IOException ioe) { /* ignore damaged or unreadable files */ }
+        catch (RuntimeException re) { /* ignore anything else wrong */ }
+        finally                   // always close the font file
+        {
+          closeQuietly(input);
+        }
+      }
     }
+  } // end of searchFolder() method
 
-    /* When the window size changes, we need to recalculate several settings
-    for the vertical scroll bar.  These are otherwise static except the current
-    position.  As a programming note, please call setValues() when setting more
-    than one of the parameters, otherwise the change listener may fire between
-    calls to the individual methods for setting parameters.  The maximum value
-    is one more than what you might expect, but that's what Java wants. */
 
-    if ((cellCount != panelCount) || redoHeight || redoWidth) // changed size?
-    {
-      panelCount = cellCount;     // save current number of displayed cells
-      int row = cornerIndex / panelColumns;
-                                  // convert character index to row number
-      row = Math.max(0, Math.min(row, ((cellCount / panelColumns)
-        - panelRows + 1)));       // if possible, don't leave blank rows at end
-      CharMap4.gridScroll.setValues(row, // scroll value
-        panelRows,                // extent (visible amount)
-        0,                        // minimum: always zero
-        ((cellCount + panelColumns - 1) / panelColumns));
-                                  // maximum: allow partial last row
-      cornerIndex = CharMap4.gridScroll.getValue() * panelColumns;
-                                  // convert scroll row back to character index
+/*
+  closeQuietly() method
 
-      CharMap4.gridScroll.setBlockIncrement(Math.max(1, (panelRows - 1)));
-                                  // lines/rows per "scroll one page"
-      CharMap4.gridScroll.setUnitIncrement(1); // rows per "scroll one line"
+  Close a font file, if it was opened, and ignore any errors.  We only read
+  from font files, so there is nothing to lose by closing badly.
+*/
+  static void closeQuietly(RandomAccessFile input)
+  {
+    if (input != null)            // was the file opened?
+    {
+      try { input.close(); }      // yes, try to close input file
+      catch (IOException ioe) { /* ignore errors while closing */ }
     }
+  }
 
-    /* Draw each character that is wholely or partially visible in the current
-    grid.  The code below is very sloppy: it calls a subroutine for all index
-    values that *might* be defined, including a partial next line. */
 
-    int end = cornerIndex + (panelColumns * (panelRows + 1)) - 1; // partials
-    for (i = cornerIndex; i <= end; i ++) // display all possible characters
-      paintGridCell(gr2d, render, i); // paint each and every possible cell
+/*
+  searchFont() method
 
-  } // end of paintComponent() method
+  Add one font from a file to our list of known fonts.  If two files have the
+  same font name, then the first file found is used.
+*/
+  static void searchFont(RandomAccessFile input, File file, int offset)
+    throws IOException
+  {
+    String name = readFullName(input, offset); // may be <null>
+    if (name != null)
+    {
+      String key = name.toLowerCase(); // font names are not case sensitive
+      if (fontMap.containsKey(key) == false)
+        fontMap.put(key, new CharMap4Font(file, offset));
+    }
+  }
 
+} // end of CharMap4Font class
 
-/*
-  paintGridCell() method
+// ------------------------------------------------------------------------- //
 
-  The caller wants us to paint one cell in the character grid.  The cell may or
-  may not be defined.  The cell may be highlighted during mouse clicks.
+/*
+  CharMap4Ranges class
 
-  Please note that many fonts draw outside of their declared bounding boxes!
-  View a font like "Lucida Console" before making any judgements about the
-  accuracy of this method.
+  A growing list of character ranges, as pairs of first and last character
+  numbers.  Adjacent characters are joined into a single range as they are
+  added.  Used when reading a font's "cmap" table, which may have thousands of
+  small segments.
 */
-  void paintGridCell(Graphics2D gr2d, FontRenderContext render, int index)
-  {
-    if (index >= cellCount)       // is there a defined character?
-      return;                     // no, do nothing and return to caller
 
-    /* Calculate top-left drawing corner of the border for this cell. */
+class CharMap4Ranges
+{
+  /* instance variables */
 
-    int x = (((index - cornerIndex) % panelColumns) * horizStep) + PANEL_MARGIN;
-    int y = (((index - cornerIndex) / panelColumns) * vertiStep) + PANEL_MARGIN;
+  int count;                      // number of integers used in <list>
+  int[] list;                     // pairs of first, last character numbers
 
-    /* Despite appearances, we don't actually draw lines for the grid!  We
-    erase a rectangle with the gridline color, then later a smaller interior
-    rectangle with the background color. */
+  /* constructor */
 
-    gr2d.setColor(GRID_COLOR);    // flood fill with gridline color
-    gr2d.fillRect(x, y, (horizStep + GRID_WIDTH), (vertiStep + GRID_WIDTH));
+  public CharMap4Ranges()
+  {
+    count = 0;                    // start with no ranges
+    list = new int[64];           // grows as required
+  }
 
-    /* If we're not highlighting, then clear the interior of the cell to the
-    background color. */
+  /* add() method: add one character */
 
-    if (index == clickIndex)      // is the mouse clicking on this character?
-      gr2d.setColor(TEXT_COLOR);  // click reverses background-foreground
-    else if (index == hoverIndex) // is the mouse over this character?
-      { /* do nothing: keep gridline color */ }
-    else
-      gr2d.setColor(PANEL_COLOR); // mouse is elsewhere, normal background
-    gr2d.fillRect((x + GRID_WIDTH), (y + GRID_WIDTH),
-      (horizStep - GRID_WIDTH), (vertiStep - GRID_WIDTH));
+  void add(int ch)
+  {
+    addRange(ch, ch);
+  }
 
-    /* Draw the defined character or raw glyph. */
+  /* addRange() method: add a range of characters */
 
-    gr2d.setColor((index == clickIndex) ? PANEL_COLOR : TEXT_COLOR);
-    if (CharMap4.glyphFlag)       // are we displaying raw glyphs?
-    {
-      int[] list = new int[1];    // need a list for createGlyphVector()
-      list[0] = cellGlyph[index]; // only value in list is the glyph index
-      GlyphVector glyvector = panelFont.createGlyphVector(render, list);
-      gr2d.drawGlyphVector(glyvector,
-        (x + GRID_WIDTH + TEXT_MARGIN + ((maxWidth
-          - ((int) glyvector.getGlyphMetrics(0).getAdvanceX())) / 2)),
-        (y + GRID_WIDTH + TEXT_MARGIN + lineAscent));
-    }
-    else                          // no, displaying standard characters
+  void addRange(int first, int last)
+  {
+    if ((count > 0) && (first >= list[count - 2])
+      && (first <= (list[count - 1] + 1))) // touches or overlaps last range?
     {
-      int ch = cellChar[index];   // get the character we want to display
-      gr2d.setFont(panelFont);    // set the correct font
-      gr2d.drawString(CharMap4.charToString(ch),
-        (x + GRID_WIDTH + TEXT_MARGIN + ((maxWidth
-          - fontData.charWidth(ch)) / 2)),
-        (y + GRID_WIDTH + TEXT_MARGIN + lineAscent));
+      list[count - 1] = Math.max(last, list[count - 1]); // extend last range
+      return;
     }
-  } // end of paintGridCell() method
-
+    if (count >= list.length)     // is there room for another pair?
+      list = Arrays.copyOf(list, (2 * list.length)); // no, double the size
+    list[count ++] = first;
+    list[count ++] = last;
+  }
 
-/*
-  stateChanged() method
+  /* toArray() method: return sorted, merged list of ranges */
 
-  Currently only used for the vertical scroll bar.  This method gets called
-  often, perhaps too often.  Try to invoke other methods only if something
-  important has changed.
-*/
-  public void stateChanged(ChangeEvent event)
+  int[] toArray()
   {
-    if (panelFont != null)        // are we ready to handle this yet?
-    {
-      int scroll = CharMap4.gridScroll.getValue(); // scroll bar row position
-      int newCorner = scroll * panelColumns; // convert rows to characters
-      if (newCorner != cornerIndex) // has drawing position truly changed?
-      {
-        cornerIndex = newCorner;  // yes, remember new starting position
-        this.repaint();           // mark ourselves as needing to be repainted
-      }
-    }
-  } // end of stateChanged() method
+    int i;                        // index variable
+    int pairs = count / 2;        // number of ranges added
 
-} // end of CharMap4Grid class
+    /* Ranges from fonts should already be in order, but don't trust that.  Sort
+    by first character, then join any ranges that touch or overlap. */
+
+    long[] sorted = new long[pairs];
+    for (i = 0; i < pairs; i ++)
+      sorted[i] = (((long) list[2 * i]) << 32) | list[(2 * i) + 1];
+    Arrays.sort(sorted);          // character numbers are never negative
+
+    CharMap4Ranges result = new CharMap4Ranges();
+    for (i = 0; i < pairs; i ++)
+      result.addRange((int) (sorted[i] >>> 32), (int) sorted[i]);
+    return(Arrays.copyOf(result.list, result.count));
+  }
+
+} // end of CharMap4Ranges class
 
 // ------------------------------------------------------------------------- //
 
@@ -2983,7 +6378,10 @@ class CharMap4User extends AbstractAction implements Runnable
 
   public void run()
   {
-    CharMap4.loadConfig();        // load all possible mouse caption strings
+    if (CharMap4.captionReady)    // are we back on the event thread?
+      CharMap4.loadFinished();    // yes, captions are ready to be shown
+    else
+      CharMap4.loadConfig();      // load all possible mouse caption strings
   }
 
 } // end of CharMap4User class
@@ -11,16 +11,25 @@
       http://www.unicode.org/Public/UNIDATA/Blocks.txt
 
   to obtain Unicode "block" or range names.  Output is formatted as source code
-  to be inserted into the captionGet() method of the CharMap4 Java application.
-  Some manual editing will be required on the first line ("if" instead of "else
-  if").  This program assumes that block names do not contain backslashes (\),
-  control codes, escape sequences, quotation marks ("), or any other characters
-  that would cause syntax errors in the generated source code.
+  for three tables in the CharMap4 Java application: BLOCK_FIRST and BLOCK_LAST
+  with the first and last character numbers of each block, in increasing order,
+  and BLOCK_NAMES with the name of each block.  Replace each of these tables
+  with the matching lines.  (Older versions generated a chain of "if" and "else
+  if" statements for the captionGet() method.)  This program assumes that
+  block names do not contain backslashes (\), control codes, escape sequences,
+  quotation marks ("), or any other characters that would cause syntax errors
+  in the generated source code.
+
+  A second output file called "parsed-ranges.txt" has the ASSIGNED_RANGES table
+  for the CharMap4Scan class: pairs of first and last character numbers, with
+  adjacent blocks joined together, and without surrogates or the supplementary
+  private use planes.  Replace the body of the table with these lines.
 
   CharMapParse1 should be run once each time the Unicode standard is revised.
   There are no parameters.  The "Blocks.txt" data file must be in the current
-  working directory.  Output goes into a file called "parsed-blocks.txt" using
-  the system's default character set for easy copy-and-paste.
+  working directory.  Output goes into files called "parsed-blocks.txt" and
+  "parsed-ranges.txt" using the system's default character set for easy
+  copy-and-paste.
 
   Written for Unicode 5.1.0 (2008) and still working on Unicode 11.0.0 (2018).
   Strictly speaking, "Blocks.txt" changed from US-ASCII plain text to UTF-8 in
@@ -42,15 +51,24 @@
 */
 
 import java.io.*;                 // standard I/O
+import java.util.*;               // array lists
 import java.util.regex.*;         // regular expressions
 
 public class CharMapParse1
 {
+  static int pairs;               // number of range pairs on current line
+  static PrintWriter ranges;      // output character stream for ranges
+
   public static void main(String[] args)
   {
+    int begin, end;               // first and last character in one block
+    int first, last;              // joined range waiting to be written
     BufferedReader input;         // input character stream
     String line;                  // one line of text from input file
     Matcher matcher;              // pattern matcher for <pattern>
+    ArrayList firstList, lastList; // first and last character of each block
+    String name;                  // block name
+    ArrayList nameList;           // name of each block
     PrintWriter output;           // output character stream
     Pattern pattern;              // compiled regular expression
 
@@ -60,6 +78,13 @@ public class CharMapParse1
         "Blocks.txt"), "UTF-8")); // mostly US-ASCII with some UTF-8 comments
       output = new PrintWriter(new BufferedWriter(new FileWriter(
         "parsed-blocks.txt")));
+      ranges = new PrintWriter(new BufferedWriter(new FileWriter(
+        "parsed-ranges.txt")));
+      first = last = -1;          // no joined range yet
+      firstList = new ArrayList(); // no blocks found yet
+      lastList = new ArrayList();
+      nameList = new ArrayList();
+      pairs = 0;                  // nothing written on current line
       pattern = Pattern.compile(
         "^\\s*([0-9A-Fa-f]+)\\s*\\.\\.\\s*([0-9A-Fa-f]+)\\s*;\\s*(\\S.*\\S)\\s*$");
       while ((line = input.readLine()) != null)
@@ -67,14 +92,41 @@ public class CharMapParse1
         matcher = pattern.matcher(line); // attempt to match
         if (matcher.find())       // if the search pattern is found
         {
-          output.println("      else if ((value >= 0x"
-            + matcher.group(1).toUpperCase() + ") && (value <= 0x"
-            + matcher.group(2).toUpperCase() + "))");
-          output.println("        caption = \"" + matcher.group(3) + "\";");
+          begin = Integer.parseInt(matcher.group(1), 16);
+          end = Integer.parseInt(matcher.group(2), 16);
+          name = matcher.group(3);
+          firstList.add(new Integer(begin)); // blocks are in increasing order
+          lastList.add(new Integer(end));
+          nameList.add("\"" + name + "\"");
+
+          if (name.endsWith("Surrogates") // no characters, only halves
+            || name.startsWith("Supplementary Private Use Area"))
+          {
+            /* Not probed unless the user asks for everything. */
+          }
+          else if ((first >= 0) && (begin == (last + 1))) // adjacent block?
+            last = end;           // yes, join with previous range
+          else
+          {
+            if (first >= 0)       // write previous range, if any
+              putRange(first, last, false);
+            first = begin;        // start a new range
+            last = end;
+          }
         }
       }
+      if (first >= 0)             // write final range, if any
+        putRange(first, last, true);
+
+      output.println("  static final int[] BLOCK_FIRST = {");
+      putTable(output, firstList, true);
+      output.println("  static final int[] BLOCK_LAST = {");
+      putTable(output, lastList, true);
+      output.println("  static final String[] BLOCK_NAMES = {");
+      putTable(output, nameList, false);
       input.close();              // try to close input file
       output.close();             // try to close output file
+      ranges.close();
     }
     catch (IOException ioe)       // all other I/O errors
     {
@@ -82,6 +134,47 @@ public class CharMapParse1
     }
   } // end of main() method
 
+  static void putRange(int first, int last, boolean lastFlag)
+  {
+    String text = hex(first) + ", " + hex(last) + (lastFlag ? "" : ",");
+    if (pairs == 0)               // first pair on a new line?
+      ranges.print("    " + text);
+    else
+      ranges.print(" " + text);
+    pairs ++;                     // three pairs per line
+    if (lastFlag || (pairs >= 3))
+    {
+      ranges.println();
+      pairs = 0;
+    }
+  }
+
+  static void putTable(PrintWriter output, ArrayList list, boolean hexFlag)
+  {
+    StringBuffer buffer = new StringBuffer(); // one line of output
+    for (int i = 0; i < list.size(); i ++)
+    {
+      String text = (hexFlag ? hex(((Integer) list.get(i)).intValue())
+        : (String) list.get(i)) + ((i < (list.size() - 1)) ? "," : "");
+      if ((buffer.length() > 0) && ((buffer.length() + text.length()) >= 78))
+      {
+        output.println(buffer);   // line would be too long, write it now
+        buffer.setLength(0);
+      }
+      buffer.append((buffer.length() == 0) ? "   " : "");
+      buffer.append(" " + text);
+    }
+    output.println(buffer + "};"); // final line ends the table
+  }
+
+  static String hex(int value)
+  {
+    String result = Integer.toHexString(value).toUpperCase();
+    if (result.length() < 4)      // must have at least four digits
+      result = "0000".substring(result.length()) + result;
+    return("0x" + result);
+  }
+
 } // end of CharMapParse1 class
 
 /* Copyright (c) 2009 by Keith Fenske.  Apache License or GNU GPL. */
@@ -38,6 +38,10 @@
       U+2FA1D have default names in UnicodeData.txt that are not replaced by
       better information in the Unihan files.  See also CharMapParse7.
 
+  Korean Hangul syllables (U+AC00 to U+D7A3) and Tangut components (U+18800 to
+  U+18AFF) are not in the output, because CharMap4 generates those captions
+  from the character numbers.
+
   Modified for Unicode 9.0.0 (2016) and still working on Unicode 11.0.0 (2018).
   CharMapParse6 replaces four older programs numbered 2 to 5.  (CharMapParse1
   does a different but related job.)  This source file should only be
@@ -68,42 +72,6 @@ public class CharMapParse6
   static final String EMPTY = ""; // the empty string
   static final String VARIANT_TAG = "Z:"; // sort variants after other tags
 
-  /* The following string arrays are used when converting Unicode character
-  numbers for Korean Hangul syllables to caption strings.  Please refer to
-  these on-line references:
-
-      http://en.wikipedia.org/wiki/Hangul
-      http://en.wikipedia.org/wiki/Korean_language_and_computers
-      http://en.wikipedia.org/wiki/Korean_romanization
-      http://en.wikipedia.org/wiki/Revised_Romanization_of_Korean
-
-  The Unicode assignments for Hangul are so regular that it is unnecessary to
-  store 11,172 separate caption strings for 0xAC00 to 0xD7A3.  This becomes
-  especially true when you realize that only 2,350 of those Hangul syllables
-  are in common use! */
-
-  static final String[] HANGUL_NAME_INITIAL = {"Kiyeok", "Ssangkiyeok",
-    "Nieun", "Tikeut", "Ssangtikeut", "Rieul", "Mieum", "Pieup", "Ssangpieup",
-    "Sios", "Ssangsios", "Ieung", "Cieuc", "Ssangcieuc", "Chieuch", "Khieukh",
-    "Thieuth", "Phieuph", "Hieuh"};
-  static final String[] HANGUL_NAME_MEDIAL = {"A", "Ae", "Ya", "Yae", "Eo",
-    "E", "Yeo", "Ye", "O", "Wa", "Wae", "Oe", "Yo", "U", "Weo", "We", "Wi",
-    "Yu", "Eu", "Yi", "I"};
-  static final String[] HANGUL_NAME_FINAL = {"", "Kiyeok", "Ssangkiyeok",
-    "Kiyeok-Sios", "Nieun", "Nieun-Cieuc", "Nieun-Hieuh", "Tikeut", "Rieul",
-    "Rieul-Kiyeok", "Rieul-Mieum", "Rieul-Pieup", "Rieul-Sios",
-    "Rieul-Thieuth", "Rieul-Phieuph", "Rieul-Hieuh", "Mieum", "Pieup",
-    "Pieup-Sios", "Sios", "Ssangsios", "Ieung", "Cieuc", "Chieuch", "Khieukh",
-    "Thieuth", "Phieuph", "Hieuh"};
-  static final String[] HANGUL_SOUND_INITIAL = {"G", "KK", "N", "D", "TT", "R",
-    "M", "B", "PP", "S", "SS", "", "J", "JJ", "CH", "K", "T", "P", "H"};
-  static final String[] HANGUL_SOUND_MEDIAL = {"A", "AE", "YA", "YAE", "EO",
-    "E", "YEO", "YE", "O", "WA", "WAE", "OE", "YO", "U", "WO", "WE", "WI",
-    "YU", "EU", "UI", "I"};
-  static final String[] HANGUL_SOUND_FINAL = {"", "K", "KK", "KS", "N", "NJ",
-    "NH", "T", "L", "LK", "LM", "LP", "LS", "LT", "LP", "LH", "M", "P", "PS",
-    "S", "SS", "NG", "J", "CH", "K", "T", "P", "H"};
-
   /* class variables */
 
   static TreeMap captionMap;      // mapping of character numbers to captions
@@ -126,7 +94,6 @@ public class CharMapParse6
       replace earlier characters. */
 
       uniBegin();                 // parse standard character names
-      hanBegin();                 // generate Korean Hangul syllables
       cjkBegin();                 // add or replace CJK ideographs
 
       /* Extract all known characters and write an output line for each.  A
@@ -575,44 +542,6 @@ public class CharMapParse6
   }
 
 
-/*
-  hanBegin() method
-
-  Generate Korean Hangul syllables and sounds similar to the data file:
-
-  http://www.iana.org/domains/idn-tables/tables/kr_ko-kr_1.0.html
-  linked from: http://www.iana.org/domains/idn-tables/
-  was (c.2008): http://www.iana.org/assignments/idn/kr-korean.html
-*/
-  static void hanBegin()
-  {
-    String caption;               // generated caption string
-    int value;                    // Unicode character number
-
-    /* The following code was obtained from the CharMap4 Java application, with
-    minimal changes (to verify that the code works as expected). */
-
-    for (value = 0xAC00; value <= 0xD7A3; value ++) // Korean Hangul range
-    {
-      int first = value - 0xAC00; // set zero point for following calculation
-      int third = first % 28;     // index of "final" phonetic piece
-      first = first / 28;         // remove value of final piece
-      int second = first % 21;    // index of "medial" phonetic piece
-      first = first / 21;         // index of "initial" phonetic piece
-
-      caption = "Hangul Syllable " + HANGUL_NAME_INITIAL[first] + " "
-        + HANGUL_NAME_MEDIAL[second] + " " + HANGUL_NAME_FINAL[third];
-      caption = caption.trim();   // remove any unused third piece
-      String sound = HANGUL_SOUND_INITIAL[first]
-        + HANGUL_SOUND_MEDIAL[second] + HANGUL_SOUND_FINAL[third];
-      caption += " (" + sound.charAt(0) + sound.substring(1).toLowerCase()
-        + ")";                    // first "letter" may be from second piece
-
-      putCaption(value, caption); // save caption for this character
-    }
-  } // end of hanBegin() method
-
-
 /*
   putCaption() method
 
@@ -685,8 +614,10 @@ public class CharMapParse6
       matcher = pattern.matcher(line); // attempt to match
       if (matcher.find())         // if the search pattern is found
       {
-        putCaption(Integer.parseInt(matcher.group(1), 16), // hex char number
-          titleCase(matcher.group(2))); // caption text for character
+        int value = Integer.parseInt(matcher.group(1), 16); // hex char number
+        if ((value >= 0x18800) && (value <= 0x18AFF)) // Tangut Components?
+          continue;               // generated by CharMap4, don't save
+        putCaption(value, titleCase(matcher.group(2))); // caption text
       }
     }
     input.close();                // try to close input file